@@ -0,0 +1,23 @@
+#!/usr/bin/env sh
+# Запись базовых результатов бенчмарков: benchmarks/baseline.json и описание машины benchmarks/baseline-machine.txt
+# Запускается из корня проекта на эталонной машине, результат коммитится отдельным коммитом.
+set -e
+
+cd "$(dirname "$0")/.."
+
+./mvnw -B -Pjmh test-compile exec:exec -Djmh.result="$PWD/benchmarks/baseline.json" "$@"
+
+{
+    echo "Коммит: $(git rev-parse --short HEAD)"
+    echo "Дата: $(date -u +%Y-%m-%dT%H:%M:%SZ)"
+    if [ -r /proc/cpuinfo ]; then
+        echo "Процессор: $(grep -m1 'model name' /proc/cpuinfo | cut -d: -f2 | sed 's/^ *//')"
+    else
+        echo "Процессор: $(sysctl -n machdep.cpu.brand_string)"
+    fi
+    echo "Ядер: $(getconf _NPROCESSORS_ONLN)"
+    echo "ОС: $(uname -srm)"
+    java -version 2>&1 | sed 's/^/JDK: /'
+} > benchmarks/baseline-machine.txt
+
+echo "Базовые результаты записаны: benchmarks/baseline.json, benchmarks/baseline-machine.txt"
@@ -0,0 +1,187 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import org.jsoup.Jsoup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.plastinin.memo_linker_bot.MemoLinkerBotApplication;
+import ru.plastinin.memo_linker_bot.configuration.StopWordsConfig;
+import ru.plastinin.memo_linker_bot.module.UuidV7;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Данные для бенчмарков: страницы-образцы (src/jmh/resources/corpus) и база с ссылками пользователя
+ * Заголовки, описания и теги ссылок составляются из слов русской и английской страниц,
+ * генератор случайных чисел с постоянным зерном, поэтому данные одинаковы при каждом запуске.
+ */
+final class BenchmarkData {
+
+    static final Long CHAT_ID = 100L;
+
+    static final List<String> CORPORA = List.of("ru", "en");
+
+    private static final int BATCH_SIZE = 1000;
+
+    // Внешняя база PostgreSQL для bot.search.backend=postgres: -Dbenchmark.jdbc.url=jdbc:postgresql://...
+    private static final String JDBC_URL = "benchmark.jdbc.url";
+    private static final String JDBC_USER = "benchmark.jdbc.user";
+    private static final String JDBC_PASSWORD = "benchmark.jdbc.password";
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * HTML страницы-образца
+     *
+     * @param name ru или en
+     * @return String
+     */
+    static String corpus(String name) {
+        try (InputStream input = new ClassPathResource("corpus/" + name + ".html").getInputStream()) {
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Словарь стоп-слов приложения
+     *
+     * @return StopWordsConfig
+     */
+    static StopWordsConfig stopWords() {
+        StopWordsConfig config = new StopWordsConfig(new HashSet<>(), new ClassPathResource("static/StopWords.txt"));
+        try {
+            config.init();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return config;
+    }
+
+    /**
+     * Самые частые слова страницы-образца, по алфавиту: из них берутся теги и слова запросов
+     *
+     * @param name ru или en
+     * @return List String
+     */
+    static List<String> topWords(String name) {
+        WordFrequencyCounter counter = new WordFrequencyCounter(stopWords().getStopWords());
+        counter.append(Jsoup.parse(corpus(name)).body().text());
+        List<String> words = new ArrayList<>(counter.topTags(40));
+        Collections.sort(words);
+        return words;
+    }
+
+    /**
+     * Запуск приложения с links ссылками пользователя CHAT_ID
+     * База - H2 в памяти, для backend postgres - внешняя база PostgreSQL из системных свойств
+     * benchmark.jdbc.url, benchmark.jdbc.user, benchmark.jdbc.password. Таблицы приложения в ней
+     * очищаются перед заполнением, поэтому база должна быть отдельной, только для бенчмарков.
+     * Бот не подключается к Telegram (bot.mode не polling и не webhook)
+     *
+     * @param backend bot.search.backend
+     * @param links   количество ссылок
+     * @return контекст приложения, закрывается в TearDown бенчмарка
+     */
+    static ConfigurableApplicationContext start(String backend, int links) {
+        boolean postgres = "postgres".equals(backend);
+        List<String> args = new ArrayList<>(List.of(
+                "--bot.token=benchmark",
+                "--bot.username=benchmark",
+                "--bot.mode=benchmark",
+                "--bot.refresh.enabled=false",
+                "--bot.search.backend=" + backend,
+                "--server.port=0",
+                "--management.server.port=0",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN"));
+        if (postgres) {
+            String url = System.getProperty(JDBC_URL);
+            if (url == null) {
+                throw new IllegalStateException("Для backend=postgres нужна база PostgreSQL: -D" + JDBC_URL
+                        + "=jdbc:postgresql://host:5432/db (см. benchmarks/README.md)");
+            }
+            args.add("--spring.datasource.url=" + url);
+            args.add("--spring.datasource.driverClassName=org.postgresql.Driver");
+            args.add("--spring.datasource.username=" + System.getProperty(JDBC_USER, "postgres"));
+            args.add("--spring.datasource.password=" + System.getProperty(JDBC_PASSWORD, ""));
+            args.add("--spring.jpa.database-platform=org.hibernate.dialect.PostgreSQLDialect");
+        } else {
+            args.add("--spring.datasource.url=jdbc:h2:mem:benchmark-" + backend + "-" + links
+                    + ";DB_CLOSE_DELAY=-1;MODE=PostgreSQL");
+        }
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(MemoLinkerBotApplication.class)
+                .run(args.toArray(String[]::new));
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        if (postgres) {
+            // Данные прошлого запуска: словарь тегов приложения пуст, поэтому очищаются и теги
+            jdbcTemplate.execute("TRUNCATE LINK_TAGS, SAVED_LINKS, IMPORT_JOBS, USERS, TAGS");
+        }
+        seed(jdbcTemplate, context.getBean(TagDictionary.class), links);
+        if (postgres) {
+            // Статистика для планировщика по только что вставленным строкам
+            jdbcTemplate.execute("ANALYZE");
+        }
+        return context;
+    }
+
+    private static void seed(JdbcTemplate jdbcTemplate, TagDictionary tagDictionary, int links) {
+        UUID userId = UuidV7.generate();
+        jdbcTemplate.update("INSERT INTO USERS (USER_ID, CHAT_ID, USERNAME, CREATED_AT) VALUES (?, ?, ?, ?)",
+                userId, CHAT_ID, "benchmark", Timestamp.valueOf(LocalDateTime.now()));
+
+        Random random = new Random(42);
+        Map<String, List<String>> words = new HashMap<>();
+        Map<String, List<String>> tags = new HashMap<>();
+        for (String name : CORPORA) {
+            words.put(name, UserLinkIndex.tokenize(Jsoup.parse(corpus(name)).body().text()));
+            tags.put(name, topWords(name));
+        }
+
+        LocalDateTime createdAt = LocalDateTime.now().minusMinutes(links);
+        List<Object[]> linkRows = new ArrayList<>(BATCH_SIZE);
+        List<Object[]> tagRows = new ArrayList<>(BATCH_SIZE * 5);
+        for (int i = 0; i < links; i++) {
+            String name = CORPORA.get(random.nextInt(CORPORA.size()));
+            UUID linkId = UuidV7.generate();
+            String url = "https://example." + ("ru".equals(name) ? "ru" : "com") + "/posts/" + i;
+            linkRows.add(new Object[]{linkId, userId, url, UrlCanonicalizer.hash(url),
+                    phrase(words.get(name), 4 + random.nextInt(6), random),
+                    phrase(words.get(name), 15 + random.nextInt(16), random),
+                    Timestamp.valueOf(createdAt.plusMinutes(i))});
+            List<String> pool = tags.get(name);
+            Set<String> linkTags = new HashSet<>();
+            for (int t = 3 + random.nextInt(6); t > 0; t--) {
+                linkTags.add(pool.get(random.nextInt(pool.size())));
+            }
+            for (String tag : linkTags) {
+                tagRows.add(new Object[]{linkId, tagDictionary.intern(tag)});
+            }
+            if (linkRows.size() == BATCH_SIZE || i == links - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO SAVED_LINKS (LINK_ID, USER_ID, ORIGIN_URL, URL_HASH, TITLE, "
+                        + "DESCRIPTION, CREATED_AT) VALUES (?, ?, ?, ?, ?, ?, ?)", linkRows);
+                jdbcTemplate.batchUpdate("INSERT INTO LINK_TAGS (LINK_ID, TAG_ID) VALUES (?, ?)", tagRows);
+                linkRows.clear();
+                tagRows.clear();
+            }
+        }
+    }
+
+    private static String phrase(List<String> words, int length, Random random) {
+        StringJoiner phrase = new StringJoiner(" ");
+        int start = random.nextInt(words.size() - length);
+        for (int i = 0; i < length; i++) {
+            phrase.add(words.get(start + i));
+        }
+        return phrase.toString();
+    }
+}
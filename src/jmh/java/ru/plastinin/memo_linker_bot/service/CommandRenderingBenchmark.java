@@ -0,0 +1,64 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.plastinin.memo_linker_bot.dto.ListPage;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ответы команд /list, /tags и /find целиком: запросы к базе H2 и сборка текста сообщения
+ * Поиск /find - через индекс в памяти (bot.search.backend=index), как в приложении по умолчанию.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CommandRenderingBenchmark {
+
+    @Param({"100", "10000"})
+    public int links;
+
+    private ConfigurableApplicationContext context;
+    private MemoLinkerBotService botService;
+    private String[] findMessage;
+    private String olderCursor;
+
+    @Setup
+    public void setup() {
+        context = BenchmarkData.start("index", links);
+        botService = context.getBean(MemoLinkerBotService.class);
+        List<String> ru = BenchmarkData.topWords("ru");
+        List<String> en = BenchmarkData.topWords("en");
+        findMessage = new String[]{"/find", ru.getFirst(), en.getFirst(), "#" + en.getLast()};
+        olderCursor = botService.listCommandHandler(BenchmarkData.CHAT_ID).getNextCursor();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ListPage list() {
+        return botService.listCommandHandler(BenchmarkData.CHAT_ID);
+    }
+
+    @Benchmark
+    public ListPage listOlderPage() {
+        return botService.listPageHandler(BenchmarkData.CHAT_ID, true, olderCursor);
+    }
+
+    @Benchmark
+    public String tags() {
+        return botService.tagsListCommandHandler(BenchmarkData.CHAT_ID);
+    }
+
+    @Benchmark
+    public String find() {
+        return botService.findCommandHandler(BenchmarkData.CHAT_ID, findMessage);
+    }
+}
@@ -0,0 +1,142 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import ru.plastinin.memo_linker_bot.module.UuidV7;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Вставка ссылок с ключами UUID.randomUUID() (random) и UuidV7 (v7) в базу H2 в файле со схемой schema.sql
+ * Пачка из BATCH ссылок по три тега в LINK_TAGS на одну операцию. Кроме пропускной способности JMH выводит
+ * (и пишет в results.json) размер таблиц SAVED_LINKS и LINK_TAGS вместе с индексами в байтах на ссылку
+ * после каждой итерации (DISK_SPACE_USED): случайные ключи вставляются в случайные страницы индексов,
+ * ключи v7 - в конец.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeyInsertBenchmark {
+
+    private static final int BATCH = 1000;
+    private static final int TAGS = 100;
+
+    @Param({"random", "v7"})
+    public String keys;
+
+    /**
+     * База бенчмарка. Открытые поля - счетчики JMH, заполняются в конце итерации
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Database {
+
+        /** Байт SAVED_LINKS с индексами на ссылку */
+        public long savedLinksBytesPerLink;
+        /** Байт LINK_TAGS с индексами на ссылку */
+        public long linkTagsBytesPerLink;
+
+        private boolean v7;
+        private Path directory;
+        private Connection connection;
+        private PreparedStatement insertLink;
+        private PreparedStatement insertTag;
+        private UUID userId;
+        private long inserted;
+
+        @Setup(Level.Trial)
+        public void open(BenchmarkParams params) throws IOException, SQLException {
+            v7 = "v7".equals(params.getParam("keys"));
+            directory = Files.createTempDirectory("key-insert-benchmark");
+            connection = DriverManager.getConnection("jdbc:h2:file:" + directory.resolve("memo")
+                    + ";MODE=PostgreSQL", "sa", "");
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("RUNSCRIPT FROM 'classpath:/schema.sql'");
+                for (int i = 0; i < TAGS; i++) {
+                    statement.execute("INSERT INTO TAGS (NAME) VALUES ('tag" + i + "')");
+                }
+            }
+            userId = nextId();
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO USERS (USER_ID, CHAT_ID, USERNAME) VALUES (?, 1, 'benchmark')")) {
+                statement.setObject(1, userId);
+                statement.executeUpdate();
+            }
+            connection.setAutoCommit(false);
+            insertLink = connection.prepareStatement("INSERT INTO SAVED_LINKS (LINK_ID, USER_ID, ORIGIN_URL, URL_HASH,"
+                    + " TITLE, CREATED_AT) VALUES (?, ?, ?, ?, ?, ?)");
+            insertTag = connection.prepareStatement("INSERT INTO LINK_TAGS (LINK_ID, TAG_ID) VALUES (?, ?)");
+        }
+
+        @TearDown(Level.Iteration)
+        public void measure() throws SQLException {
+            if (inserted > 0) {
+                savedLinksBytesPerLink = diskSpaceUsed("SAVED_LINKS") / inserted;
+                linkTagsBytesPerLink = diskSpaceUsed("LINK_TAGS") / inserted;
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException, SQLException {
+            connection.close();
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+
+        void insertBatch() throws SQLException {
+            Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now());
+            for (int i = 0; i < BATCH; i++) {
+                UUID linkId = nextId();
+                String url = "https://example.com/posts/" + inserted;
+                insertLink.setObject(1, linkId);
+                insertLink.setObject(2, userId);
+                insertLink.setString(3, url);
+                insertLink.setString(4, UrlCanonicalizer.hash(url));
+                insertLink.setString(5, "Ссылка " + inserted);
+                insertLink.setTimestamp(6, createdAt);
+                insertLink.addBatch();
+                for (int t = 0; t < 3; t++) {
+                    insertTag.setObject(1, linkId);
+                    insertTag.setInt(2, (int) ((inserted + t * 37) % TAGS) + 1);
+                    insertTag.addBatch();
+                }
+                inserted++;
+            }
+            insertLink.executeBatch();
+            insertTag.executeBatch();
+            connection.commit();
+        }
+
+        private UUID nextId() {
+            return v7 ? UuidV7.generate() : UUID.randomUUID();
+        }
+
+        private long diskSpaceUsed(String table) throws SQLException {
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT DISK_SPACE_USED('" + table + "')")) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void insert(Database database) throws SQLException {
+        database.insertBatch();
+    }
+}
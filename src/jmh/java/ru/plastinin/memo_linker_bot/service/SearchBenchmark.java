@@ -0,0 +1,80 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.plastinin.memo_linker_bot.dto.SearchQuery;
+import ru.plastinin.memo_linker_bot.dto.SearchResult;
+import ru.plastinin.memo_linker_bot.module.User;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск ссылок /find разными реализациями LinkSearchBackend
+ * index - индекс в памяти (в измерение попадает уже загруженный индекс), like - запросы like,
+ * h2 - полнотекстовый индекс H2, postgres - полнотекстовый поиск PostgreSQL во внешней базе
+ * (-Dbenchmark.jdbc.url в jvmArgsAppend, без нее этот вариант завершается ошибкой), остальные - на H2 в памяти.
+ * Для миллиона ссылок: -p links=1000000 (нужно несколько ГБ памяти), команда в benchmarks/README.md.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+    @Param({"index", "like", "h2", "postgres"})
+    public String backend;
+
+    @Param({"1000", "100000"})
+    public int links;
+
+    private ConfigurableApplicationContext context;
+    private LinkSearchBackend searchBackend;
+    private User user;
+
+    private SearchQuery allWords;
+    private SearchQuery anyWord;
+    private SearchQuery prefix;
+    private SearchQuery tag;
+
+    @Setup
+    public void setup() {
+        context = BenchmarkData.start(backend, links);
+        searchBackend = context.getBean(LinkSearchBackend.class);
+        user = context.getBean(UserCache.class).findByChatId(BenchmarkData.CHAT_ID).orElseThrow();
+
+        List<String> ru = BenchmarkData.topWords("ru");
+        List<String> en = BenchmarkData.topWords("en");
+        allWords = SearchQuery.builder().words(List.of(ru.get(0), ru.get(1))).build();
+        anyWord = SearchQuery.builder().words(List.of(ru.get(0), en.get(0))).anyWord(true).build();
+        prefix = SearchQuery.builder().words(List.of(en.get(1).substring(0, 3))).build();
+        tag = SearchQuery.builder().tags(List.of(en.getLast())).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public SearchResult allWords() {
+        return searchBackend.search(user, allWords, 10);
+    }
+
+    @Benchmark
+    public SearchResult anyWord() {
+        return searchBackend.search(user, anyWord, 10);
+    }
+
+    @Benchmark
+    public SearchResult prefix() {
+        return searchBackend.search(user, prefix, 10);
+    }
+
+    @Benchmark
+    public SearchResult tag() {
+        return searchBackend.search(user, tag, 10);
+    }
+}
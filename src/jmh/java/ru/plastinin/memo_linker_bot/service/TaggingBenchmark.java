@@ -0,0 +1,74 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jsoup.Jsoup;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+import org.openjdk.jmh.annotations.*;
+import ru.plastinin.memo_linker_bot.configuration.StopWordsConfig;
+import ru.plastinin.memo_linker_bot.dto.PageMetadata;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Авто-теги страницы: подсчет частоты слов и полный разбор страницы
+ * scanner - прежний подсчет через Scanner, для сравнения с WordFrequencyCounter.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TaggingBenchmark {
+
+    @Param({"ru", "en"})
+    public String corpus;
+
+    private String html;
+    private String text;
+    private Set<String> stopWords;
+    private PageParserService pageParserService;
+
+    @Setup
+    public void setup() {
+        html = BenchmarkData.corpus(corpus);
+        text = Jsoup.parse(html).body().text();
+        StopWordsConfig stopWordsConfig = BenchmarkData.stopWords();
+        stopWords = stopWordsConfig.getStopWords();
+        // Страница уже загружена: PageFetcher не нужен
+        pageParserService = new PageParserService(stopWordsConfig, new SimpleMeterRegistry(), null);
+    }
+
+    @Benchmark
+    public Set<String> counter() {
+        WordFrequencyCounter counter = new WordFrequencyCounter(stopWords);
+        counter.append(text);
+        return counter.topTags(10);
+    }
+
+    @Benchmark
+    public List<String> scanner() {
+        Map<String, Integer> wordFrequency = new HashMap<>();
+        try (Scanner scanner = new Scanner(text.toLowerCase())) {
+            scanner.useDelimiter("[^\\p{L}\\p{M}'-]+");
+            while (scanner.hasNext() && wordFrequency.size() < WordFrequencyCounter.MAX_UNIQUE_WORDS) {
+                String word = scanner.next().toLowerCase();
+                if (word.length() >= 3 && !stopWords.contains(word)) {
+                    wordFrequency.put(word, wordFrequency.getOrDefault(word, 0) + 1);
+                }
+            }
+        }
+        return wordFrequency.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .limit(10)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    @Benchmark
+    public PageMetadata extract() {
+        return pageParserService.extract(new StreamParser(Parser.htmlParser()).parse(html, "https://example.com/"));
+    }
+}
@@ -0,0 +1,41 @@
+package ru.plastinin.memo_linker_bot.actuator;
+
+import lombok.RequiredArgsConstructor;
+import org.jspecify.annotations.Nullable;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+import ru.plastinin.memo_linker_bot.service.HostHealthRegistry;
+
+import java.util.Map;
+
+/**
+ * Состояние хостов для операторов: /actuator/hosts
+ * GET /actuator/hosts?unhealthy=true - только хосты с ошибками и отключенные,
+ * GET /actuator/hosts/{host} - один хост, DELETE /actuator/hosts/{host} - снова включить загрузку с хоста
+ * (только при management.endpoint.hosts.access=unrestricted, по умолчанию доступно только чтение).
+ */
+@Component
+@Endpoint(id = "hosts")
+@RequiredArgsConstructor
+public class HostHealthEndpoint {
+
+    private final HostHealthRegistry hostHealthRegistry;
+
+    @ReadOperation
+    public Map<String, HostHealthRegistry.HostStatus> hosts(@Nullable Boolean unhealthy) {
+        return hostHealthRegistry.status(Boolean.TRUE.equals(unhealthy));
+    }
+
+    @ReadOperation
+    public HostHealthRegistry.HostStatus host(@Selector String host) {
+        return hostHealthRegistry.status(false).get(host);
+    }
+
+    @DeleteOperation
+    public boolean reset(@Selector String host) {
+        return hostHealthRegistry.reset(host);
+    }
+}
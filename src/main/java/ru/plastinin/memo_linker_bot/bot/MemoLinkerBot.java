@@ -1,17 +1,48 @@
 package ru.plastinin.memo_linker_bot.bot;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.CharacterEncodingFilter;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
+import org.telegram.telegrambots.meta.api.methods.GetFile;
+import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Document;
+import org.telegram.telegrambots.meta.api.objects.File;
+import org.telegram.telegrambots.meta.api.objects.InputFile;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import ru.plastinin.memo_linker_bot.constants.MessageConstants;
+import ru.plastinin.memo_linker_bot.dto.ExportFile;
+import ru.plastinin.memo_linker_bot.dto.ListPage;
+import ru.plastinin.memo_linker_bot.exception.ServiceException;
+import ru.plastinin.memo_linker_bot.service.BookmarkImportService;
+import ru.plastinin.memo_linker_bot.service.ImportFeedback;
+import ru.plastinin.memo_linker_bot.service.LinkExportService;
 import ru.plastinin.memo_linker_bot.service.MemoLinkerBotService;
+import ru.plastinin.memo_linker_bot.service.SaveLinkPipeline;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 
 @Component
@@ -21,6 +52,21 @@ public class MemoLinkerBot extends TelegramLongPollingBot {
     @Autowired
     MemoLinkerBotService botService;
 
+    @Autowired
+    SaveLinkPipeline saveLinkPipeline;
+
+    @Autowired
+    UpdateDispatcher updateDispatcher;
+
+    @Autowired
+    BookmarkImportService bookmarkImportService;
+
+    @Autowired
+    OutboundMessageQueue outboundQueue;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
     @Autowired
     private CharacterEncodingFilter characterEncodingFilter;
 
@@ -33,28 +79,164 @@ public class MemoLinkerBot extends TelegramLongPollingBot {
     private static final String LIST = "/list";
     private static final String TAGS = "/tags";
     private static final String FIND = "/find";
+    private static final String IMPORT = "/import";
+    private static final String EXPORT = "/export";
+
+    // Команды для метрики memo.command, остальной текст считается как unknown
+    private static final Set<String> COMMANDS = Set.of(START, HELP, SAVE, LIST, TAGS, FIND, IMPORT, EXPORT);
+
+    // Кнопки перехода по страницам /list: префикс + курсор страницы
+    private static final String LIST_OLDER = "list:next:";
+    private static final String LIST_NEWER = "list:prev:";
+
+    // Загрузка файла импорта и сообщения о ходе импорта
+    private final ImportFeedback importFeedback = new ImportFeedback() {
+        @Override
+        public InputStream openFile(String fileId) throws IOException {
+            try {
+                File file = execute(GetFile.builder().fileId(fileId).build());
+                return downloadFileAsStream(file);
+            } catch (TelegramApiException e) {
+                throw new IOException("Не удалось загрузить файл: " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void progress(Long chatId, Integer messageId, String text) {
+            if (messageId == null) {
+                sendMessage(chatId, text);
+            } else {
+                editMessage(chatId, messageId, text, null);
+            }
+        }
+    };
 
 
-    public MemoLinkerBot(@Value("${bot.token}") String botToken) {
-        super(botToken);
+    public MemoLinkerBot(@Value("${bot.token}") String botToken,
+                         @Value("${bot.api-url:https://api.telegram.org/bot}") String apiUrl) {
+        super(botOptions(apiUrl), botToken);
     }
 
     /**
-     * Основная логика бота
+     * Настройки бота: адрес Bot API (свой сервер Bot API или поддельный API нагрузочного теста)
+     *
+     * @param apiUrl адрес, к которому добавляется токен и метод
+     * @return DefaultBotOptions
+     */
+    private static DefaultBotOptions botOptions(String apiUrl) {
+        DefaultBotOptions options = new DefaultBotOptions();
+        options.setBaseUrl(apiUrl);
+        return options;
+    }
+
+    /**
+     * Запуск отправки исходящих сообщений через этого бота
+     */
+    @PostConstruct
+    public void startOutboundQueue() {
+        outboundQueue.start(this);
+    }
+
+    /**
+     * Прием обновления
+     * Обработка передается диспетчеру: команды одного чата выполняются по порядку,
+     * разные чаты обрабатываются параллельно
      *
      * @param update Update
      */
     @Override
     public void onUpdateReceived(Update update) {
+        // Обработка нажатий на кнопки
+        if (update.hasCallbackQuery()) {
+            CallbackQuery callbackQuery = update.getCallbackQuery();
+            Long chatId = callbackQuery.getMessage().getChatId();
+            if (!updateDispatcher.dispatch(chatId, () -> timed("callback", () -> handleCallbackQuery(callbackQuery)))) {
+                answerCallbackQuery(callbackQuery.getId());
+            }
+            return;
+        }
+        // Обработка текстовых сообщений и файлов для импорта
+        if (!update.hasMessage() || !(update.getMessage().hasText() || update.getMessage().hasDocument())) {
+            return;
+        }
         Long chatId = update.getMessage().getChatId();
-        String userName = update.getMessage().getChat().getUserName();
+        if (!updateDispatcher.dispatch(chatId, () -> timed(commandName(update.getMessage()), () -> handleUpdate(update)))) {
+            sendMessage(chatId, MessageConstants.MESSAGE_BUSY);
+        }
+    }
+
+    /**
+     * Команда сообщения для метрик
+     *
+     * @param msg Message
+     * @return команда из COMMANDS или unknown
+     */
+    private String commandName(Message msg) {
+        if (msg.hasDocument()) {
+            return isImport(msg) ? IMPORT : "unknown";
+        }
+        String command = msg.getText().split(" ")[0];
+        return COMMANDS.contains(command) ? command : "unknown";
+    }
+
+    /**
+     * Файл с подписью /import
+     *
+     * @param msg Message с файлом
+     * @return boolean
+     */
+    private static boolean isImport(Message msg) {
+        String caption = msg.getCaption();
+        return caption != null && IMPORT.equals(caption.trim().split(" ")[0]);
+    }
+
+    /**
+     * Обработка обновления с записью времени в memo.command
+     * Для /save, /import и /export это время до постановки в очередь, а не до ответа пользователю
+     *
+     * @param command команда
+     * @param handler обработчик
+     */
+    private void timed(String command, Runnable handler) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String exception = "none";
+        try {
+            handler.run();
+        } catch (RuntimeException e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder("memo.command")
+                    .description("Обработка команд бота")
+                    .tag("command", command)
+                    .tag("exception", exception)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Основная логика бота
+     *
+     * @param update Update
+     */
+    private void handleUpdate(Update update) {
         Message msg = update.getMessage();
+        Long chatId = msg.getChatId();
+        String userName = msg.getChat().getUserName();
 
-        // Обработка текстовых сообщений
-        if (!update.hasMessage() || !msg.hasText()) {
+        // Файл с подписью /import - импорт закладок, на другие файлы отвечаем подсказкой
+        if (msg.hasDocument()) {
+            if (isImport(msg)) {
+                importCommand(chatId, msg.getDocument());
+                log.info("IMPORT from username: {}, chatId: {}.", userName, chatId);
+            } else {
+                sendMessage(chatId, MessageConstants.MESSAGE_IMPORT_HELP);
+                log.info("Document without /import from username: {}, chatId: {}.", userName, chatId);
+            }
             return;
         }
-        String[] message = update.getMessage().getText().split(" ");
+
+        String[] message = msg.getText().split(" ");
         switch (message[0]) {
             case START -> {
                 startCommand(chatId, userName);
@@ -76,6 +258,14 @@ public class MemoLinkerBot extends TelegramLongPollingBot {
                 findCommand(chatId, message);
                 log.info("FIND from username: {}, chatId: {}.", userName, chatId);
             }
+            case IMPORT -> {
+                sendMessage(chatId, MessageConstants.MESSAGE_IMPORT_HELP);
+                log.info("IMPORT help from username: {}, chatId: {}.", userName, chatId);
+            }
+            case EXPORT -> {
+                exportCommand(chatId, message);
+                log.info("EXPORT from username: {}, chatId: {}.", userName, chatId);
+            }
             case HELP -> {
                 helpCommand(chatId);
                 log.info("HELP from username: {}, chatId: {}.", userName, chatId);
@@ -88,6 +278,26 @@ public class MemoLinkerBot extends TelegramLongPollingBot {
 
     }
 
+    /**
+     * Обработка нажатий на кнопки под сообщениями
+     *
+     * @param callbackQuery CallbackQuery
+     */
+    private void handleCallbackQuery(CallbackQuery callbackQuery) {
+        answerCallbackQuery(callbackQuery.getId());
+        String data = callbackQuery.getData();
+        if (data == null) {
+            return;
+        }
+        Long chatId = callbackQuery.getMessage().getChatId();
+        Integer messageId = callbackQuery.getMessage().getMessageId();
+        if (data.startsWith(LIST_OLDER)) {
+            listPage(chatId, messageId, true, data.substring(LIST_OLDER.length()));
+        } else if (data.startsWith(LIST_NEWER)) {
+            listPage(chatId, messageId, false, data.substring(LIST_NEWER.length()));
+        }
+    }
+
     @Override
     public String getBotUsername() {
         return botUsername;
@@ -105,11 +315,20 @@ public class MemoLinkerBot extends TelegramLongPollingBot {
 
     /**
      * Обработчик команды /save
+     * Сразу отвечает "сохраняю...", а загрузку страницы выполняет асинхронно
+     * и по готовности заменяет ответ результатом сохранения
      *
      */
     private void saveCommand(Long chatId, String[] message) {
-        String text = botService.saveCommandHandler(chatId, message);
-        sendMessage(chatId, text);
+        if (message.length <= 1) {
+            sendMessage(chatId, MessageConstants.MESSAGE_ERROR_NO_URL_TO_SAVE);
+            return;
+        }
+        CompletableFuture<Message> reply = sendReplaceableMessage(chatId, MessageConstants.MESSAGE_SAVE_IN_PROGRESS);
+        boolean accepted = saveLinkPipeline.submit(chatId, message, text -> replaceMessage(chatId, reply, text));
+        if (!accepted) {
+            replaceMessage(chatId, reply, MessageConstants.MESSAGE_BUSY);
+        }
     }
 
     /**
@@ -118,8 +337,44 @@ public class MemoLinkerBot extends TelegramLongPollingBot {
      *
      */
     private void listCommand(Long chatId) {
-        String text = botService.listCommandHandler(chatId);
-        sendMessage(chatId, text);
+        ListPage page = botService.listCommandHandler(chatId);
+        sendMessage(chatId, page.getText(), listKeyboard(page), false);
+    }
+
+    /**
+     * Переход на другую страницу списка ссылок: сообщение со списком заменяется
+     *
+     */
+    private void listPage(Long chatId, Integer messageId, boolean older, String cursor) {
+        ListPage page = botService.listPageHandler(chatId, older, cursor);
+        editMessage(chatId, messageId, page.getText(), listKeyboard(page));
+        log.info("LIST page, chatId: {}.", chatId);
+    }
+
+    /**
+     * Кнопки "новее" / "старее" для страницы списка ссылок
+     *
+     * @param page ListPage
+     * @return InlineKeyboardMarkup или null, если страница единственная
+     */
+    private InlineKeyboardMarkup listKeyboard(ListPage page) {
+        List<InlineKeyboardButton> row = new ArrayList<>();
+        if (page.getPrevCursor() != null) {
+            row.add(InlineKeyboardButton.builder()
+                    .text("⬅️ Новее")
+                    .callbackData(LIST_NEWER + page.getPrevCursor())
+                    .build());
+        }
+        if (page.getNextCursor() != null) {
+            row.add(InlineKeyboardButton.builder()
+                    .text("Старее ➡️")
+                    .callbackData(LIST_OLDER + page.getNextCursor())
+                    .build());
+        }
+        if (row.isEmpty()) {
+            return null;
+        }
+        return InlineKeyboardMarkup.builder().keyboardRow(row).build();
     }
 
     /**
@@ -141,6 +396,74 @@ public class MemoLinkerBot extends TelegramLongPollingBot {
         sendMessage(chatId, text);
     }
 
+    /**
+     * Обработчик команды /import: файл с закладками
+     * Ход импорта показывается в одном сообщении, которое обновляется по мере обработки,
+     * поэтому задание запускается после отправки этого сообщения, снова в очереди чата
+     *
+     */
+    private void importCommand(Long chatId, Document document) {
+        sendReplaceableMessage(chatId, MessageConstants.MESSAGE_IMPORT_STARTED).thenAccept(reply -> {
+            if (!updateDispatcher.dispatch(chatId, () -> startImport(chatId, document, reply))) {
+                replaceMessage(chatId, reply, MessageConstants.MESSAGE_BUSY);
+            }
+        });
+    }
+
+    private void startImport(Long chatId, Document document, Message reply) {
+        String error = botService.importCommandHandler(chatId, document.getFileId(), document.getFileName(),
+                reply == null ? null : reply.getMessageId(), importFeedback);
+        if (error != null) {
+            replaceMessage(chatId, reply, error);
+        }
+    }
+
+    /**
+     * Обработчик команды /export
+     * Файл отправляется отдельным потоком очереди по мере формирования,
+     * поэтому большая выгрузка не задерживает другие команды и сообщения
+     *
+     */
+    private void exportCommand(Long chatId, String[] message) {
+        CompletableFuture<Message> reply = sendReplaceableMessage(chatId, MessageConstants.MESSAGE_EXPORT_IN_PROGRESS);
+        ExportFile export;
+        try {
+            export = botService.exportCommandHandler(chatId, message);
+        } catch (ServiceException e) {
+            log.error("Ошибка выгрузки: {}", e.getMessage());
+            replaceMessage(chatId, reply, MessageConstants.MESSAGE_EXPORT_ERROR);
+            return;
+        }
+        InputStream content = export.getContent();
+        outboundQueue.upload(SendDocument.builder()
+                        .chatId(String.valueOf(chatId))
+                        .document(new InputFile(content, export.getFileName()))
+                        .build())
+                .whenComplete((document, e) -> {
+                    try {
+                        content.close();
+                    } catch (IOException ex) {
+                        log.debug("Ошибка закрытия выгрузки: {}", ex.getMessage());
+                    }
+                    if (e == null) {
+                        replaceMessage(chatId, reply, MessageConstants.MESSAGE_EXPORT_DONE);
+                    } else {
+                        log.error("Ошибка отправки выгрузки: {}", e.getMessage());
+                        replaceMessage(chatId, reply, LinkExportService.isTooLarge(e)
+                                ? MessageConstants.MESSAGE_EXPORT_TOO_LARGE
+                                : MessageConstants.MESSAGE_EXPORT_ERROR);
+                    }
+                });
+    }
+
+    /**
+     * Продолжение импортов, прерванных перезапуском бота
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeImports() {
+        bookmarkImportService.resumeJobs(importFeedback);
+    }
+
     /**
      * Обработчик команды /help
      *
@@ -151,30 +474,129 @@ public class MemoLinkerBot extends TelegramLongPollingBot {
     }
 
     /**
-     * Отправка сообщения в чат
+     * Отправка сообщения в чат через очередь исходящих сообщений
+     * Идущие подряд сообщения в чат могут быть склеены в одно
      *
      * @param chatId Long
      * @param text   String
+     * @return отправленное сообщение или null, если отправить не удалось
      */
-    private void sendMessage(Long chatId, String text) {
+    private CompletableFuture<Message> sendMessage(Long chatId, String text) {
+        return sendMessage(chatId, text, null, true);
+    }
+
+    /**
+     * Отправка сообщения, которое потом будет заменено (replaceMessage): такие сообщения не склеиваются
+     *
+     * @param chatId Long
+     * @param text   String
+     * @return отправленное сообщение или null, если отправить не удалось
+     */
+    private CompletableFuture<Message> sendReplaceableMessage(Long chatId, String text) {
+        return sendMessage(chatId, text, null, false);
+    }
+
+    /**
+     * Отправка сообщения с кнопками в чат
+     *
+     * @param chatId    Long
+     * @param text      String
+     * @param markup    кнопки под сообщением или null
+     * @param mergeable можно ли склеить сообщение с соседним
+     * @return отправленное сообщение или null, если отправить не удалось
+     */
+    private CompletableFuture<Message> sendMessage(Long chatId, String text, InlineKeyboardMarkup markup,
+                                                   boolean mergeable) {
         var chatIdStr = String.valueOf(chatId);
         var sendMessage = new SendMessage(chatIdStr, text);
         sendMessage.setParseMode("HTML");
-        try {
-            execute(sendMessage);
-        } catch (TelegramApiException e) {
-            // Формируем сообщение об ошибке и отправляем его обратно в чат
+        sendMessage.setReplyMarkup(markup);
+        return outboundQueue.send(sendMessage, mergeable).exceptionally(e -> {
             log.error("Error sending message: {}", e.getMessage());
+            // Если Telegram ограничил отправку или очередь переполнена, еще одно сообщение только навредит
+            if (OutboundMessageQueue.isRateLimited(e) || e instanceof RejectedExecutionException) {
+                return null;
+            }
+            // Формируем сообщение об ошибке и отправляем его обратно в чат
             var errorText = "<b>Возникла ошибка:</b>\n\n" + e.getMessage();
             var errorSendMessage = new SendMessage(chatIdStr, errorText);
             errorSendMessage.setParseMode("HTML");
-            try {
-                // Отправляем сообщение об ошибке
-                execute(errorSendMessage);
-            } catch (TelegramApiException ex) {
+            outboundQueue.send(errorSendMessage, false).exceptionally(ex -> {
                 log.error("Не удалось отправить сообщение об ошибке. Возникла новая ошибка: {}", ex.getMessage());
-            }
+                return null;
+            });
+            return null;
+        });
+    }
+
+    /**
+     * Замена текста сообщения, когда оно будет отправлено
+     *
+     * @param chatId Long
+     * @param reply  отправляемое сообщение
+     * @param text   String
+     */
+    private void replaceMessage(Long chatId, CompletableFuture<Message> reply, String text) {
+        reply.thenAccept(message -> replaceMessage(chatId, message, text));
+    }
+
+    /**
+     * Замена текста ранее отправленного сообщения
+     * Если исходное сообщение отправить не удалось, отправляется новое
+     *
+     * @param chatId  Long
+     * @param message ранее отправленное сообщение
+     * @param text    String
+     */
+    private void replaceMessage(Long chatId, Message message, String text) {
+        if (message == null) {
+            sendMessage(chatId, text);
+            return;
         }
+        editMessage(chatId, message.getMessageId(), text, null);
+    }
+
+    /**
+     * Изменение текста и кнопок ранее отправленного сообщения
+     * Если изменить сообщение не удалось, отправляется новое
+     *
+     * @param chatId    Long
+     * @param messageId идентификатор сообщения
+     * @param text      String
+     * @param markup    кнопки под сообщением или null
+     */
+    private void editMessage(Long chatId, Integer messageId, String text, InlineKeyboardMarkup markup) {
+        var editMessage = EditMessageText.builder()
+                .chatId(String.valueOf(chatId))
+                .messageId(messageId)
+                .text(text)
+                .parseMode("HTML")
+                .replyMarkup(markup)
+                .build();
+        outboundQueue.execute(chatId, editMessage).exceptionally(e -> {
+            // Текст не изменился - новое сообщение не нужно
+            if (e.getMessage() != null && e.getMessage().contains("message is not modified")) {
+                return null;
+            }
+            log.error("Error editing message: {}", e.getMessage());
+            if (!OutboundMessageQueue.isRateLimited(e) && !(e instanceof RejectedExecutionException)) {
+                sendMessage(chatId, text, markup, false);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Ответ на нажатие кнопки, чтобы Telegram убрал индикатор загрузки
+     *
+     * @param callbackQueryId идентификатор нажатия
+     */
+    private void answerCallbackQuery(String callbackQueryId) {
+        outboundQueue.executeAsync(AnswerCallbackQuery.builder().callbackQueryId(callbackQueryId).build())
+                .exceptionally(e -> {
+                    log.error("Error answering callback query: {}", e.getMessage());
+                    return null;
+                });
     }
 
 }
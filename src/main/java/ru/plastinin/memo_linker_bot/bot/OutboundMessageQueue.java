@@ -0,0 +1,409 @@
+package ru.plastinin.memo_linker_bot.bot;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.PartialBotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Очередь исходящих сообщений
+ * Сообщения отправляются собственными потоками с соблюдением ограничений Telegram:
+ * общего (bot.outbound.global-rate сообщений в секунду) и на чат (не чаще bot.outbound.per-chat-interval).
+ * Сообщения одного чата уходят строго по порядку. При ответе 429 отправка в чат откладывается
+ * на retry_after из ответа. Идущие подряд простые сообщения в один чат склеиваются в одно,
+ * новое изменение сообщения заменяет еще не отправленное изменение того же сообщения.
+ * Файлы отправляются отдельными потоками (не больше bot.outbound.upload-workers одновременно):
+ * выгрузка читается из базы по мере отправки и не должна занимать потоки сообщений.
+ * Время каждого вызова Bot API пишется в memo.outbound.send с методом и кодом ошибки.
+ */
+@Component
+@Slf4j
+public class OutboundMessageQueue {
+
+    private static final int MAX_MESSAGE_LENGTH = 4096;
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    // Очереди чатов и чаты, готовые к отправке (по времени, когда в чат снова можно писать)
+    private final Map<Long, ChatQueue> chats = new ConcurrentHashMap<>();
+    private final DelayQueue<ChatQueue> ready = new DelayQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final long perChatIntervalNanos;
+    private final long globalIntervalNanos;
+    private final int workers;
+    private final int queueCapacity;
+    private final int maxRetries;
+
+    // Время следующей отправки с учетом общего ограничения
+    private final Object globalLock = new Object();
+    private long nextGlobalSlot = System.nanoTime();
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Отправка файлов; пока файл отправляется, его чат не берется потоками сообщений
+    private final ExecutorService uploadExecutor;
+
+    private volatile AbsSender sender;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Counter throttled;
+    private final Counter coalesced;
+    private final Counter rejected;
+
+    public OutboundMessageQueue(MeterRegistry meterRegistry,
+                                @Value("${bot.outbound.global-rate:30}") int globalRate,
+                                @Value("${bot.outbound.per-chat-interval:PT1S}") Duration perChatInterval,
+                                @Value("${bot.outbound.workers:8}") int workers,
+                                @Value("${bot.outbound.queue-capacity:10000}") int queueCapacity,
+                                @Value("${bot.outbound.max-retries:3}") int maxRetries,
+                                @Value("${bot.outbound.upload-workers:2}") int uploadWorkers) {
+        this.globalIntervalNanos = TimeUnit.SECONDS.toNanos(1) / globalRate;
+        this.perChatIntervalNanos = perChatInterval.toNanos();
+        this.workers = workers;
+        this.queueCapacity = queueCapacity;
+        this.maxRetries = maxRetries;
+        this.meterRegistry = meterRegistry;
+        this.uploadExecutor = Executors.newFixedThreadPool(uploadWorkers,
+                Thread.ofVirtual().name("outbound-upload-", 0).factory());
+
+        Gauge.builder("memo.outbound.queue.depth", size, AtomicInteger::get)
+                .description("Количество сообщений, ожидающих отправки")
+                .register(meterRegistry);
+        this.throttled = Counter.builder("memo.outbound.throttled")
+                .description("Ответы 429 Too Many Requests")
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("memo.outbound.coalesced")
+                .description("Сообщения, склеенные с предыдущими или заменившие их")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("memo.outbound.rejected")
+                .description("Сообщения, отклоненные из-за переполнения очереди")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Запуск потоков отправки
+     *
+     * @param sender бот, через который отправляются сообщения
+     */
+    public synchronized void start(AbsSender sender) {
+        if (this.sender != null) {
+            return;
+        }
+        this.sender = sender;
+        for (int i = 0; i < workers; i++) {
+            executor.execute(this::work);
+        }
+    }
+
+    /**
+     * Отправить сообщение
+     *
+     * @param message   SendMessage
+     * @param mergeable можно ли склеить сообщение с соседним (нельзя, если сообщение потом изменяется)
+     * @return отправленное сообщение
+     */
+    public CompletableFuture<Message> send(SendMessage message, boolean mergeable) {
+        return enqueue(Long.valueOf(message.getChatId()), message, mergeable);
+    }
+
+    /**
+     * Выполнить метод, относящийся к чату (изменение сообщения и т.п.)
+     *
+     * @param chatId Long
+     * @param method BotApiMethod
+     * @return результат метода
+     */
+    public <T extends Serializable> CompletableFuture<T> execute(Long chatId, BotApiMethod<T> method) {
+        return enqueue(chatId, method, false);
+    }
+
+    /**
+     * Отправить файл
+     * Повторной отправки после 429 нет: содержимое файла уже прочитано
+     *
+     * @param document SendDocument
+     * @return отправленное сообщение
+     */
+    public CompletableFuture<Message> upload(SendDocument document) {
+        return enqueue(Long.valueOf(document.getChatId()), document, false);
+    }
+
+    /**
+     * Выполнить метод без ограничений и очереди, но не в потоке вызова
+     * (ответы на нажатия кнопок и т.п.: это не сообщения в чат)
+     *
+     * @param method BotApiMethod
+     * @return результат метода
+     */
+    public <T extends Serializable> CompletableFuture<T> executeAsync(BotApiMethod<T> method) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                future.complete(executeMethod(method));
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Ошибка - исчерпанное ограничение Telegram (429)
+     *
+     * @param error исключение, которым завершилась отправка
+     * @return boolean
+     */
+    public static boolean isRateLimited(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof TelegramApiRequestException requestException
+                && Objects.equals(requestException.getErrorCode(), TOO_MANY_REQUESTS);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> enqueue(Long chatId, PartialBotApiMethod<?> method, boolean mergeable) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        if (size.get() >= queueCapacity) {
+            rejected.increment();
+            future.completeExceptionally(new RejectedExecutionException("Очередь исходящих сообщений переполнена"));
+            return (CompletableFuture<T>) (CompletableFuture<?>) future;
+        }
+        while (true) {
+            ChatQueue chat = chats.computeIfAbsent(chatId, ChatQueue::new);
+            synchronized (chat) {
+                if (chat.removed) {
+                    // Очередь чата только что удалена потоком отправки - возьмем новую
+                    continue;
+                }
+                if (!coalesce(chat, method, mergeable, future)) {
+                    chat.tasks.addLast(new Task(method, mergeable, future));
+                    size.incrementAndGet();
+                }
+                if (!chat.scheduled) {
+                    chat.scheduled = true;
+                    ready.put(chat);
+                }
+            }
+            return (CompletableFuture<T>) (CompletableFuture<?>) future;
+        }
+    }
+
+    /**
+     * Склейка с еще не отправленным сообщением чата
+     *
+     * @return true, если сообщение объединено с уже стоящим в очереди
+     */
+    private boolean coalesce(ChatQueue chat, PartialBotApiMethod<?> method, boolean mergeable,
+                             CompletableFuture<Object> future) {
+        if (method instanceof EditMessageText edit) {
+            for (Task task : chat.tasks) {
+                if (!task.started && task.method instanceof EditMessageText queued
+                        && Objects.equals(queued.getMessageId(), edit.getMessageId())) {
+                    task.method = edit;
+                    task.futures.add(future);
+                    coalesced.increment();
+                    return true;
+                }
+            }
+            return false;
+        }
+        Task last = chat.tasks.peekLast();
+        if (mergeable && last != null && last.mergeable && !last.started
+                && last.method instanceof SendMessage queued && method instanceof SendMessage message
+                && queued.getReplyMarkup() == null && message.getReplyMarkup() == null
+                && Objects.equals(queued.getParseMode(), message.getParseMode())
+                && queued.getText().length() + message.getText().length() + 1 <= MAX_MESSAGE_LENGTH) {
+            queued.setText(queued.getText() + "\n" + message.getText());
+            last.futures.add(future);
+            coalesced.increment();
+            return true;
+        }
+        return false;
+    }
+
+    private void work() {
+        while (!Thread.currentThread().isInterrupted()) {
+            ChatQueue chat;
+            try {
+                chat = ready.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            Task task;
+            synchronized (chat) {
+                task = chat.tasks.peekFirst();
+                if (task == null) {
+                    // Интервал чата истек, а сообщений больше нет
+                    chat.removed = true;
+                    chats.remove(chat.chatId, chat);
+                    continue;
+                }
+                task.started = true;
+            }
+            if (task.method instanceof SendDocument) {
+                // Чат вернется в очередь готовых после отправки файла, порядок сообщений чата сохраняется
+                uploadExecutor.execute(() -> process(chat, task));
+            } else {
+                process(chat, task);
+            }
+        }
+    }
+
+    private void process(ChatQueue chat, Task task) {
+        Serializable result = null;
+        Throwable failure = null;
+        long retryAfterNanos = 0;
+        try {
+            awaitGlobalSlot();
+            result = executeMethod(task.method);
+        } catch (TelegramApiRequestException e) {
+            if (Objects.equals(e.getErrorCode(), TOO_MANY_REQUESTS)) {
+                throttled.increment();
+            }
+            if (isRateLimited(e) && task.method instanceof BotApiMethod<?> && task.attempts++ < maxRetries) {
+                Integer retryAfter = e.getParameters() == null ? null : e.getParameters().getRetryAfter();
+                retryAfterNanos = TimeUnit.SECONDS.toNanos(retryAfter == null ? 1 : retryAfter);
+                log.warn("Telegram ограничил отправку в чат {}, повтор через {} с.", chat.chatId, retryAfter);
+            } else {
+                failure = e;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = e;
+        } catch (TelegramApiException | RuntimeException e) {
+            failure = e;
+        }
+
+        List<CompletableFuture<Object>> futures;
+        synchronized (chat) {
+            if (retryAfterNanos > 0) {
+                task.started = false;
+                chat.notBefore = System.nanoTime() + retryAfterNanos;
+                futures = List.of();
+            } else {
+                chat.tasks.pollFirst();
+                chat.notBefore = System.nanoTime() + perChatIntervalNanos;
+                futures = task.futures;
+                size.decrementAndGet();
+            }
+            // Чат остается в очереди готовых: пустой чат удаляется, когда истечет его интервал
+            ready.put(chat);
+        }
+        for (CompletableFuture<Object> future : futures) {
+            if (failure == null) {
+                future.complete(result);
+            } else {
+                future.completeExceptionally(failure);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Serializable> T executeMethod(PartialBotApiMethod<?> method) throws TelegramApiException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String error = "none";
+        try {
+            if (method instanceof SendDocument document) {
+                return (T) sender.execute(document);
+            }
+            if (method instanceof BotApiMethod<?> apiMethod) {
+                return (T) sender.execute(apiMethod);
+            }
+            throw new IllegalArgumentException("Метод не поддерживается очередью: " + method.getClass().getSimpleName());
+        } catch (TelegramApiRequestException e) {
+            error = String.valueOf(e.getErrorCode());
+            throw e;
+        } catch (TelegramApiException | RuntimeException e) {
+            error = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder("memo.outbound.send")
+                    .description("Вызовы Bot API: отправка и изменение сообщений, файлы")
+                    .tag("method", method.getClass().getSimpleName())
+                    .tag("error", error)
+                    .register(meterRegistry));
+        }
+    }
+
+    private void awaitGlobalSlot() throws InterruptedException {
+        long wait;
+        synchronized (globalLock) {
+            long now = System.nanoTime();
+            long slot = Math.max(now, nextGlobalSlot);
+            nextGlobalSlot = slot + globalIntervalNanos;
+            wait = slot - now;
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * Сообщения одного чата; поля меняются под блокировкой объекта
+     */
+    private static final class ChatQueue implements Delayed {
+
+        final Long chatId;
+        final Deque<Task> tasks = new ArrayDeque<>();
+        // Раньше этого времени (System.nanoTime) писать в чат нельзя
+        long notBefore = System.nanoTime();
+        // Чат в очереди готовых или обрабатывается
+        boolean scheduled;
+        // Чат удален из chats, новые сообщения в эту очередь не добавляются
+        boolean removed;
+
+        ChatQueue(Long chatId) {
+            this.chatId = chatId;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(notBefore - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+
+    private static final class Task {
+
+        PartialBotApiMethod<?> method;
+        final boolean mergeable;
+        final List<CompletableFuture<Object>> futures = new ArrayList<>(1);
+        boolean started;
+        int attempts;
+
+        Task(PartialBotApiMethod<?> method, boolean mergeable, CompletableFuture<Object> future) {
+            this.method = method;
+            this.mergeable = mergeable;
+            this.futures.add(future);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        uploadExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,87 @@
+package ru.plastinin.memo_linker_bot.bot;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Диспетчер входящих обновлений
+ * Обновления распределяются по полосам (однопоточным исполнителям) по chatId:
+ * команды одного чата выполняются строго по порядку, разные чаты - параллельно.
+ * Очередь каждой полосы ограничена, при переполнении обновление отклоняется.
+ */
+@Component
+@Slf4j
+public class UpdateDispatcher {
+
+    private final ThreadPoolExecutor[] stripes;
+
+    private final Counter rejected;
+
+    public UpdateDispatcher(MeterRegistry meterRegistry,
+                            @Value("${bot.dispatcher.workers:8}") int workers,
+                            @Value("${bot.dispatcher.queue-capacity:100}") int queueCapacity) {
+        this.stripes = new ThreadPoolExecutor[workers];
+        for (int i = 0; i < workers; i++) {
+            stripes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    Thread.ofVirtual().name("update-dispatcher-" + i).factory(),
+                    new ThreadPoolExecutor.AbortPolicy());
+        }
+
+        Gauge.builder("memo.dispatcher.queue.depth",
+                        () -> Arrays.stream(stripes).mapToInt(stripe -> stripe.getQueue().size()).sum())
+                .description("Количество обновлений, ожидающих обработки")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("memo.dispatcher.rejected")
+                .description("Обновления, отклоненные из-за переполнения очереди")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Поставить обработку обновления в очередь чата
+     *
+     * @param chatId  Long
+     * @param handler обработчик обновления
+     * @return false, если очередь переполнена и обновление не принято
+     */
+    public boolean dispatch(Long chatId, Runnable handler) {
+        ThreadPoolExecutor stripe = stripes[Math.floorMod(Long.hashCode(chatId), stripes.length)];
+        try {
+            stripe.execute(() -> {
+                try {
+                    handler.run();
+                } catch (Exception e) {
+                    log.error("Ошибка обработки обновления chatId {}: {}", chatId, e.getMessage());
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            log.warn("Очередь обработки переполнена, обновление от chatId {} отклонено.", chatId);
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ThreadPoolExecutor stripe : stripes) {
+            stripe.shutdown();
+        }
+        for (ThreadPoolExecutor stripe : stripes) {
+            if (!stripe.awaitTermination(10, TimeUnit.SECONDS)) {
+                stripe.shutdownNow();
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package ru.plastinin.memo_linker_bot.bot;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Прием обновлений в режиме webhook (bot.mode=webhook)
+ * Telegram присылает обновления POST-запросами с секретным токеном в заголовке.
+ * Обновление передается тем же обработчикам, что и при long polling; обработка идет
+ * в диспетчере обновлений, поэтому Telegram сразу получает ответ 200.
+ */
+@RestController
+@ConditionalOnProperty(name = "bot.mode", havingValue = "webhook")
+@Slf4j
+public class WebhookController {
+
+    static final String SECRET_TOKEN_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+
+    // Update размечен аннотациями Jackson 2, поэтому разбираем его так же, как telegrambots
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final MemoLinkerBot memoLinkerBot;
+
+    private final byte[] secretToken;
+
+    public WebhookController(MemoLinkerBot memoLinkerBot,
+                             @Value("${bot.webhook.secret-token:}") String secretToken) {
+        if (secretToken.isBlank()) {
+            throw new IllegalStateException("В режиме webhook нужно задать bot.webhook.secret-token");
+        }
+        this.memoLinkerBot = memoLinkerBot;
+        this.secretToken = secretToken.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @PostMapping(path = "${bot.webhook.path:/telegram/webhook}", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Void> onUpdate(@RequestHeader(name = SECRET_TOKEN_HEADER, required = false) String token,
+                                         @RequestBody byte[] body) {
+        // Сравнение за постоянное время, чтобы токен нельзя было подобрать по времени ответа
+        if (token == null || !MessageDigest.isEqual(secretToken, token.getBytes(StandardCharsets.UTF_8))) {
+            log.warn("Запрос webhook с неверным секретным токеном отклонен.");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        Update update;
+        try {
+            update = objectMapper.readValue(body, Update.class);
+        } catch (IOException e) {
+            log.warn("Не удалось разобрать обновление webhook: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+        memoLinkerBot.onUpdateReceived(update);
+        return ResponseEntity.ok().build();
+    }
+}
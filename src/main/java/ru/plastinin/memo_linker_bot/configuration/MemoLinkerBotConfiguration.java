@@ -1,25 +1,96 @@
 package ru.plastinin.memo_linker_bot.configuration;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.EventListener;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.brotli.BrotliInterceptor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
 import ru.plastinin.memo_linker_bot.bot.MemoLinkerBot;
 
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
+@EnableScheduling
 public class MemoLinkerBotConfiguration {
 
+    /**
+     * Получение обновлений long polling (bot.mode=polling, по умолчанию)
+     * При регистрации бота telegrambots удаляет ранее установленный webhook.
+     * Обновления начинают приходить только после перевода ключей (TimeOrderedKeyMigration)
+     * и заполнения хешей ссылок (UrlHashBackfill)
+     */
     @Bean
+    @ConditionalOnProperty(name = "bot.mode", havingValue = "polling", matchIfMissing = true)
+    @DependsOn({"timeOrderedKeyMigration", "legacyTagMigration", "urlHashBackfill"})
     public TelegramBotsApi telegramBotsApi(MemoLinkerBot memoLinkerBot) throws TelegramApiException {
         TelegramBotsApi api = new TelegramBotsApi(DefaultBotSession.class);
         api.registerBot(memoLinkerBot);
         return api;
     }
 
+    /**
+     * Общий HTTP-клиент для загрузки страниц и раскрытия коротких ссылок
+     * Пул соединений переиспользует TCP и TLS соединения между загрузками,
+     * с поддерживающими сайтами запросы идут по одному соединению HTTP/2.
+     * Ответы запрашиваются со сжатием brotli или gzip и распаковываются прозрачно.
+     * Новые TCP-соединения и TLS-рукопожатия считаются в memo.http.connects и memo.http.handshakes.
+     */
     @Bean
-    public OkHttpClient okHttpClient() {
-        return new OkHttpClient();
+    public OkHttpClient okHttpClient(MeterRegistry meterRegistry,
+                                     @Value("${bot.http.connect-timeout:PT10S}") Duration connectTimeout,
+                                     @Value("${bot.http.read-timeout:PT30S}") Duration readTimeout,
+                                     @Value("${bot.http.call-timeout:PT60S}") Duration callTimeout,
+                                     @Value("${bot.http.pool.max-idle:64}") int maxIdleConnections,
+                                     @Value("${bot.http.pool.keep-alive:PT5M}") Duration keepAlive) {
+        ConnectionPool connectionPool = new ConnectionPool(maxIdleConnections, keepAlive.toMillis(), TimeUnit.MILLISECONDS);
+        Gauge.builder("memo.http.pool.connections", connectionPool, ConnectionPool::connectionCount)
+                .description("Открытые соединения в пуле HTTP-клиента")
+                .register(meterRegistry);
+        Gauge.builder("memo.http.pool.idle", connectionPool, ConnectionPool::idleConnectionCount)
+                .description("Свободные соединения в пуле HTTP-клиента")
+                .register(meterRegistry);
+        Counter connects = Counter.builder("memo.http.connects")
+                .description("Новые TCP-соединения HTTP-клиента")
+                .register(meterRegistry);
+        Counter handshakes = Counter.builder("memo.http.handshakes")
+                .description("TLS-рукопожатия HTTP-клиента")
+                .register(meterRegistry);
+
+        return new OkHttpClient.Builder()
+                .connectionPool(connectionPool)
+                .eventListener(new EventListener() {
+                    @Override
+                    public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+                        connects.increment();
+                    }
+
+                    @Override
+                    public void secureConnectStart(Call call) {
+                        handshakes.increment();
+                    }
+                })
+                .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .addInterceptor(BrotliInterceptor.INSTANCE)
+                .connectTimeout(connectTimeout)
+                .readTimeout(readTimeout)
+                .callTimeout(callTimeout)
+                .build();
     }
 }
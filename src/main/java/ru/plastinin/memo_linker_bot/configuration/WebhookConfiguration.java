@@ -0,0 +1,47 @@
+package ru.plastinin.memo_linker_bot.configuration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import ru.plastinin.memo_linker_bot.bot.MemoLinkerBot;
+
+/**
+ * Режим webhook (bot.mode=webhook)
+ * После запуска бот сообщает Telegram адрес, на который присылать обновления,
+ * и секретный токен, который Telegram передает в каждом запросе
+ */
+@Configuration
+@ConditionalOnProperty(name = "bot.mode", havingValue = "webhook")
+@Slf4j
+public class WebhookConfiguration {
+
+    private final MemoLinkerBot memoLinkerBot;
+
+    @Value("${bot.webhook.url}")
+    private String webhookUrl;
+
+    @Value("${bot.webhook.secret-token}")
+    private String secretToken;
+
+    @Value("${bot.webhook.max-connections:40}")
+    private Integer maxConnections;
+
+    public WebhookConfiguration(MemoLinkerBot memoLinkerBot) {
+        this.memoLinkerBot = memoLinkerBot;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void registerWebhook() throws TelegramApiException {
+        memoLinkerBot.execute(SetWebhook.builder()
+                .url(webhookUrl)
+                .secretToken(secretToken)
+                .maxConnections(maxConnections)
+                .build());
+        log.info("Webhook установлен: {}", webhookUrl);
+    }
+}
@@ -16,6 +16,8 @@ public class MessageConstants {
             📋 /list - Показать все сохраненные ссылки
             🏷️ /tags - Показать облако тегов
             🔎 /find [ключевое слово(а)] [#тег #тег] - Поиск ссылок
+            📥 /import - Импорт закладок из файла
+            📤 /export [json|html] - Выгрузить все ссылки в файл
             ❓ /help -  Справка
             
             Вы зарегистрированы в боте %s
@@ -41,6 +43,8 @@ public class MessageConstants {
             <b>Например:</b>
             <i>/find spring boot</i>
             или
+            <i>/find docker или kubernetes</i>
+            или
             <i>/find #java #spring #git</i>
             
             """;
@@ -99,6 +103,74 @@ public class MessageConstants {
             
             """;
 
+    public final static String MESSAGE_SAVE_IN_PROGRESS = """
+            ⏳ Сохраняю ссылку...
+            """;
+
+    public final static String MESSAGE_BUSY = """
+            🚦 Бот сейчас перегружен. Повторите команду чуть позже.
+            """;
+
+    public final static String MESSAGE_IMPORT_HELP = """
+            📥 Для импорта закладок отправьте боту файл с подписью /import
+            
+            Поддерживаются:
+            • HTML - экспорт закладок из браузера или Pocket
+            • JSON - файл закладок Chrome, резервная копия Firefox или массив объектов с полями url, title, tags
+            • CSV - колонки url, title, tags (в том числе экспорт Pocket)
+            
+            """;
+
+    public final static String MESSAGE_IMPORT_STARTED = """
+            📥 Импорт закладок начат...
+            """;
+
+    public final static String MESSAGE_IMPORT_PROGRESS = """
+            📥 Импорт закладок: обработано %d, сохранено %d...
+            """;
+
+    public final static String MESSAGE_IMPORT_DONE = """
+            ✅ <b>Импорт завершен</b>
+            
+            Обработано закладок: %d
+            Сохранено ссылок: %d
+            
+            Остальные закладки уже были сохранены ранее или не являются ссылками.
+            """;
+
+    public final static String MESSAGE_IMPORT_FAILED = """
+            ❌ Импорт закладок прерван из-за ошибки.
+            
+            Обработано закладок: %d
+            Сохранено ссылок: %d
+            """;
+
+    public final static String MESSAGE_IMPORT_ALREADY_RUNNING = """
+            ⏳ Предыдущий импорт еще не завершен. Дождитесь его окончания.
+            """;
+
+    public final static String MESSAGE_EXPORT_IN_PROGRESS = """
+            📤 Готовлю файл со всеми ссылками...
+            """;
+
+    public final static String MESSAGE_EXPORT_DONE = """
+            ✅ <b>Выгрузка готова</b>
+            
+            Файл в формате JSON Lines можно загрузить обратно командой /import,
+            файл HTML - импортировать в браузер, распаковав архив.
+            """;
+
+    public final static String MESSAGE_EXPORT_ERROR = """
+            ❌ Не удалось выгрузить ссылки. Попробуйте позже.
+            """;
+
+    public final static String MESSAGE_EXPORT_TOO_LARGE = """
+            ❌ Файл выгрузки получается больше 50 МБ, Telegram не примет его от бота.
+            """;
+
+    // Отметка ссылки, которая не открывается при фоновой проверке (/list, /find)
+    public final static String DEAD_LINK_MARK = " ⚠️ <i>не открывается</i>";
+
     public final static String HELP_MESSAGE = """
             <b>📚❓ Справка по командам:</b>
             
@@ -107,6 +179,8 @@ public class MessageConstants {
             📋 /list - Показать все сохраненные ссылки
             🏷️ /tags - Показать облако тегов
             🔎 /find [ключевое слово(а)] [#тег #тег] - Поиск ссылок
+            📥 /import - Импорт закладок из файла
+            📤 /export [json|html] - Выгрузить все ссылки в файл
             ❓ /help -  Справка
             
             <b>Примеры:</b>
@@ -0,0 +1,19 @@
+package ru.plastinin.memo_linker_bot.dto;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Закладка из импортируемого файла
+ */
+@Value
+public class Bookmark {
+
+    String url;
+
+    String title;
+
+    List<String> tags;
+
+}
@@ -0,0 +1,17 @@
+package ru.plastinin.memo_linker_bot.dto;
+
+import lombok.Value;
+
+import java.io.InputStream;
+
+/**
+ * Файл выгрузки: содержимое формируется по мере чтения
+ */
+@Value
+public class ExportFile {
+
+    String fileName;
+
+    InputStream content;
+
+}
@@ -0,0 +1,28 @@
+package ru.plastinin.memo_linker_bot.dto;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Строка выгрузки ссылок: ссылка и один из ее тегов (tag = null, если тегов нет)
+ */
+@Value
+public class LinkExportRow {
+
+    UUID linkId;
+
+    String originUrl;
+
+    String title;
+
+    String description;
+
+    LocalDateTime createdAt;
+
+    boolean dead;
+
+    String tag;
+
+}
@@ -0,0 +1,26 @@
+package ru.plastinin.memo_linker_bot.dto;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Строка загрузки поискового индекса: поля ссылки, которые индексируются и выводятся в /find
+ */
+@Value
+public class LinkIndexRow {
+
+    UUID linkId;
+
+    String originUrl;
+
+    String title;
+
+    String description;
+
+    LocalDateTime createdAt;
+
+    boolean dead;
+
+}
@@ -0,0 +1,24 @@
+package ru.plastinin.memo_linker_bot.dto;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Строка списка ссылок /list: только то, что выводится, и ключ страницы (createdAt, linkId)
+ */
+@Value
+public class LinkListItem {
+
+    UUID linkId;
+
+    String originUrl;
+
+    String title;
+
+    LocalDateTime createdAt;
+
+    boolean dead;
+
+}
@@ -0,0 +1,17 @@
+package ru.plastinin.memo_linker_bot.dto;
+
+import lombok.Value;
+
+import java.util.UUID;
+
+/**
+ * Тег ссылки (для пакетной загрузки тегов нескольких ссылок одним запросом)
+ */
+@Value
+public class LinkTag {
+
+    UUID linkId;
+
+    String tag;
+
+}
@@ -0,0 +1,61 @@
+package ru.plastinin.memo_linker_bot.dto;
+
+import lombok.Builder;
+import lombok.Value;
+import ru.plastinin.memo_linker_bot.module.SavedLink;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Сохраненная ссылка в виде, достаточном для вывода пользователю
+ */
+@Value
+@Builder
+public class LinkView {
+
+    UUID linkId;
+
+    String originUrl;
+
+    String title;
+
+    String description;
+
+    LocalDateTime createdAt;
+
+    boolean dead;
+
+    @Builder.Default
+    Set<String> tags = Set.of();
+
+    public static LinkView from(SavedLink savedLink) {
+        return from(savedLink, savedLink.getTags() == null ? Set.of() : savedLink.getTags());
+    }
+
+    public static LinkView from(SavedLink savedLink, Set<String> tags) {
+        return LinkView.builder()
+                .linkId(savedLink.getLinkId())
+                .originUrl(savedLink.getOriginUrl())
+                .title(savedLink.getTitle())
+                .description(savedLink.getDescription())
+                .createdAt(savedLink.getCreatedAt())
+                .dead(savedLink.isDead())
+                .tags(Set.copyOf(tags))
+                .build();
+    }
+
+    public static LinkView from(LinkIndexRow row, Set<String> tags) {
+        return LinkView.builder()
+                .linkId(row.getLinkId())
+                .originUrl(row.getOriginUrl())
+                .title(row.getTitle())
+                .description(row.getDescription())
+                .createdAt(row.getCreatedAt())
+                .dead(row.isDead())
+                .tags(Set.copyOf(tags))
+                .build();
+    }
+
+}
@@ -0,0 +1,20 @@
+package ru.plastinin.memo_linker_bot.dto;
+
+import lombok.Value;
+
+/**
+ * Страница списка ссылок /list
+ * Курсоры указывают на первую и последнюю ссылку страницы, null - страницы в эту сторону нет
+ */
+@Value
+public class ListPage {
+
+    String text;
+
+    // Курсор для перехода к более новым ссылкам
+    String prevCursor;
+
+    // Курсор для перехода к более старым ссылкам
+    String nextCursor;
+
+}
@@ -0,0 +1,30 @@
+package ru.plastinin.memo_linker_bot.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.Set;
+
+/**
+ * Данные, извлеченные со страницы: заголовок, описание, картинка и авто-теги
+ * Объект неизменяемый и разделяется между пользователями через кэш страниц
+ * ETag и Last-Modified ответа нужны для условной проверки страницы при обновлении ссылок.
+ */
+@Value
+@Builder(toBuilder = true)
+public class PageMetadata {
+
+    String title;
+
+    String description;
+
+    String imageUrl;
+
+    @Builder.Default
+    Set<String> tags = Set.of();
+
+    String etag;
+
+    String lastModified;
+
+}
@@ -0,0 +1,28 @@
+package ru.plastinin.memo_linker_bot.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Поисковый запрос команды /find
+ * Ключевые слова ищутся в заголовке, описании и тегах, теги (#тег) - точным совпадением.
+ * Ссылки, найденные по словам и по тегам, объединяются.
+ */
+@Value
+@Builder
+public class SearchQuery {
+
+    // Ключевые слова в нижнем регистре
+    @Builder.Default
+    List<String> words = List.of();
+
+    // Теги без символа #
+    @Builder.Default
+    List<String> tags = List.of();
+
+    // true - достаточно совпадения любого из слов (ИЛИ), false - нужны все слова (И)
+    boolean anyWord;
+
+}
@@ -0,0 +1,18 @@
+package ru.plastinin.memo_linker_bot.dto;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Результат поиска: общее количество найденных ссылок
+ * и первые из них, самые релевантные первыми
+ */
+@Value
+public class SearchResult {
+
+    long total;
+
+    List<LinkView> links;
+
+}
@@ -0,0 +1,15 @@
+package ru.plastinin.memo_linker_bot.dto;
+
+import lombok.Value;
+
+/**
+ * Тег и количество ссылок пользователя с этим тегом
+ */
+@Value
+public class TagCount {
+
+    String tag;
+
+    Long count;
+
+}
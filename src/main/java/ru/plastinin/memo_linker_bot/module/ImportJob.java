@@ -0,0 +1,62 @@
+package ru.plastinin.memo_linker_bot.module;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Задание импорта закладок
+ * Хранит, сколько записей файла уже обработано, чтобы продолжить импорт после перезапуска
+ */
+@Entity
+@Table(name = "import_jobs")
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+@Builder
+public class ImportJob {
+
+    public enum Status {
+        RUNNING, DONE, FAILED
+    }
+
+    @Id
+    @TimeOrderedId
+    private UUID jobId;
+
+    @ManyToOne
+    @JoinColumn(name = "user_id")
+    private User user;
+
+    @Column(name = "chat_id")
+    private Long chatId;
+
+    @Column(name = "file_id")
+    private String fileId;
+
+    @Column(name = "file_name")
+    private String fileName;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status")
+    private Status status;
+
+    @Column(name = "processed")
+    private int processed;
+
+    @Column(name = "imported")
+    private int imported;
+
+    @Column(name = "message_id")
+    private Integer messageId;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+}
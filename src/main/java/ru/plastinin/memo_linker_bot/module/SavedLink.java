@@ -2,6 +2,7 @@ package ru.plastinin.memo_linker_bot.module;
 
 import jakarta.persistence.*;
 import lombok.*;
+import ru.plastinin.memo_linker_bot.service.TagNameConverter;
 
 import java.time.LocalDateTime;
 import java.util.HashSet;
@@ -18,12 +19,16 @@ import java.util.UUID;
 public class SavedLink {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedId
     private UUID linkId;
 
     @Column(name = "origin_url")
     private String originUrl;
 
+    // SHA-256 канонической ссылки, уникален в пределах пользователя
+    @Column(name = "url_hash")
+    private String urlHash;
+
     @Column(name = "title")
     private String title;
 
@@ -33,14 +38,30 @@ public class SavedLink {
     @Column(name = "image_url")
     private String imageUrl;
 
+    // ETag и Last-Modified страницы для условной проверки при обновлении ссылок
+    @Column(name = "etag")
+    private String etag;
+
+    @Column(name = "last_modified")
+    private String lastModified;
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
+    // Ссылка не открывается, отмечается фоновой проверкой LinkRefreshService
+    @Column(name = "dead")
+    private boolean dead;
+
     @ManyToOne
     @JoinColumn(name = "user_id")
     private User user;
 
+    // В LINK_TAGS хранятся идентификаторы тегов из словаря TAGS
     @ElementCollection
+    @CollectionTable(name = "link_tags", joinColumns = @JoinColumn(name = "link_id"))
+    @Column(name = "tag_id")
+    @Convert(converter = TagNameConverter.class)
+    @Builder.Default
     private Set<String> tags = new HashSet<>();
 
 }
@@ -1,25 +1,46 @@
 package ru.plastinin.memo_linker_bot.module;
 
 import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.io.Serializable;
 import java.util.UUID;
 
+/**
+ * Тег ссылки: пара (LINK_ID, TAG_ID), строка тега - в словаре TAGS
+ * Строки пишутся через SavedLink.tags или TagDictionary, сущность используется в запросах по тегам.
+ */
 @Entity
-@Table(name = "saved_link_tags")
+@Table(name = "link_tags")
+@IdClass(SavedLinkTag.Key.class)
 @Setter
 @Getter
 public class SavedLinkTag {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
-    private UUID id;
+    @Column(name = "link_id")
+    private UUID linkId;
 
-    @Column(name = "saved_link_link_id")
-    private UUID savedLinkLinkId;
+    @Id
+    @Column(name = "tag_id")
+    private Integer tagId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "tag_id", insertable = false, updatable = false)
+    private Tag tag;
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+
+        private UUID linkId;
 
-    @Column(name = "tags")
-    private String tag;
+        private Integer tagId;
 
+    }
 }
@@ -0,0 +1,21 @@
+package ru.plastinin.memo_linker_bot.module;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+@Entity
+@Table(name = "tags")
+@Setter
+@Getter
+public class Tag {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "tag_id")
+    private Integer tagId;
+
+    @Column(name = "name")
+    private String name;
+
+}
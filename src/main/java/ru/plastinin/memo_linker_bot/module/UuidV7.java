@@ -0,0 +1,43 @@
+package ru.plastinin.memo_linker_bot.module;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Упорядоченные по времени идентификаторы UUID версии 7 (RFC 9562)
+ * Старшие 48 бит - время создания в миллисекундах, остальные - случайные.
+ * Новые ключи попадают в конец индекса, а не в случайную страницу, как UUID.randomUUID():
+ * вставка не расщепляет страницы по всему индексу и индекс остается плотным.
+ */
+public final class UuidV7 {
+
+    private UuidV7() {
+    }
+
+    /**
+     * Новый идентификатор с текущим временем
+     *
+     * @return UUID
+     */
+    public static UUID generate() {
+        return generate(System.currentTimeMillis());
+    }
+
+    /**
+     * Идентификатор с заданным временем (перенос существующих записей по дате создания)
+     *
+     * @param time время создания записи
+     * @return UUID
+     */
+    public static UUID generate(Instant time) {
+        return generate(time.toEpochMilli());
+    }
+
+    private static UUID generate(long epochMillis) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long mostSigBits = (epochMillis << 16) | 0x7000L | (random.nextLong() & 0x0FFFL);
+        long leastSigBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+}
@@ -0,0 +1,16 @@
+package ru.plastinin.memo_linker_bot.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import ru.plastinin.memo_linker_bot.module.ImportJob;
+import ru.plastinin.memo_linker_bot.module.User;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface ImportJobRepository extends JpaRepository<ImportJob, UUID> {
+
+    List<ImportJob> findAllByStatus(ImportJob.Status status);
+
+    boolean existsByUserAndStatus(User user, ImportJob.Status status);
+
+}
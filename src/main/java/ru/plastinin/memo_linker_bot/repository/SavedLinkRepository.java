@@ -1,37 +1,121 @@
 package ru.plastinin.memo_linker_bot.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import ru.plastinin.memo_linker_bot.dto.LinkExportRow;
+import ru.plastinin.memo_linker_bot.dto.LinkIndexRow;
+import ru.plastinin.memo_linker_bot.dto.LinkListItem;
+import ru.plastinin.memo_linker_bot.dto.LinkTag;
 import ru.plastinin.memo_linker_bot.module.SavedLink;
 import ru.plastinin.memo_linker_bot.module.User;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface SavedLinkRepository extends JpaRepository<SavedLink, UUID> {
 
-    Optional<SavedLink> findByOriginUrlAndUser(String originUrl, User user);
+    Optional<SavedLink> findByUserAndUrlHash(User user, String urlHash);
 
     @Query("""
-            select s
+            select new ru.plastinin.memo_linker_bot.dto.LinkListItem(s.linkId, s.originUrl, s.title, s.createdAt, s.dead)
               from SavedLink s
              where s.user = ?1
-               and (lower(s.description) like lower(?2) or lower(s.title) like lower(?2))
+             order by s.createdAt desc, s.linkId desc
+             LIMIT ?2
             """)
-    List<SavedLink> findSavedLink(User user, String findTerm);
+    List<LinkListItem> findListPage(User user, int limit);
 
     @Query("""
-            select s
+            select new ru.plastinin.memo_linker_bot.dto.LinkListItem(s.linkId, s.originUrl, s.title, s.createdAt, s.dead)
               from SavedLink s
              where s.user = ?1
-             order by s.createdAt
-             LIMIT ?2
+               and (s.createdAt < ?2 or (s.createdAt = ?2 and s.linkId < ?3))
+             order by s.createdAt desc, s.linkId desc
+             LIMIT ?4
+            """)
+    List<LinkListItem> findListPageOlderThan(User user, LocalDateTime createdAt, UUID linkId, int limit);
+
+    @Query("""
+            select new ru.plastinin.memo_linker_bot.dto.LinkListItem(s.linkId, s.originUrl, s.title, s.createdAt, s.dead)
+              from SavedLink s
+             where s.user = ?1
+               and (s.createdAt > ?2 or (s.createdAt = ?2 and s.linkId > ?3))
+             order by s.createdAt, s.linkId
+             LIMIT ?4
+            """)
+    List<LinkListItem> findListPageNewerThan(User user, LocalDateTime createdAt, UUID linkId, int limit);
+
+    /**
+     * Ссылки пользователя для поискового индекса в порядке сохранения, без сущностей SavedLink.
+     * Результат читается курсором порциями, поток нужно закрыть внутри транзакции.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            select new ru.plastinin.memo_linker_bot.dto.LinkIndexRow(s.linkId, s.originUrl, s.title, s.description, s.createdAt, s.dead)
+              from SavedLink s
+             where s.user = ?1
+             order by s.createdAt, s.linkId
+            """)
+    Stream<LinkIndexRow> streamIndexRows(User user);
+
+    /**
+     * Ссылки пользователя с тегами для выгрузки: строка на каждую пару ссылка-тег,
+     * строки одной ссылки идут подряд. Результат читается курсором порциями,
+     * поток нужно закрыть внутри транзакции.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            select new ru.plastinin.memo_linker_bot.dto.LinkExportRow(s.linkId, s.originUrl, s.title, s.description, s.createdAt, s.dead, t.name)
+              from SavedLink s
+              left join SavedLinkTag st on st.linkId = s.linkId
+              left join st.tag t
+             where s.user = ?1
+             order by s.createdAt, s.linkId
             """)
-    List<SavedLink> findAllByUserOrderByCreatedAtLimit(User user, int limit);
+    Stream<LinkExportRow> streamExportRows(User user);
 
-    List<SavedLink> findAllByTagsIn(List<String> tags);
-    List<SavedLink> findAllByUserAndTagsIn(User user, List<String> tags);
+    /*
+     * Запросы по тегам соединяют словарь TAGS: строки тегов не сравниваются через SavedLink.tags,
+     * чтобы TagNameConverter не создавал теги из параметров поиска
+     */
+    @Query("""
+            select new ru.plastinin.memo_linker_bot.dto.LinkTag(st.linkId, t.name)
+              from SavedLinkTag st
+              join st.tag t
+             where st.linkId in ?1
+            """)
+    List<LinkTag> findTagsByLinkIdIn(Collection<UUID> linkIds);
 
+    @Query("""
+            select new ru.plastinin.memo_linker_bot.dto.LinkTag(st.linkId, t.name)
+              from SavedLinkTag st
+              join st.tag t
+              join SavedLink s on s.linkId = st.linkId
+             where s.user = ?1
+            """)
+    List<LinkTag> findTagsByUser(User user);
+
+    @Query("""
+            select distinct st.linkId
+              from SavedLinkTag st
+              join st.tag t
+              join SavedLink s on s.linkId = st.linkId
+             where s.user = ?1
+               and t.name in ?2
+            """)
+    List<UUID> findLinkIdsByUserAndTagsIn(User user, Collection<String> tags);
 
 }
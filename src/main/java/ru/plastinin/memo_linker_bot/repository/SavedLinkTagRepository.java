@@ -2,18 +2,31 @@ package ru.plastinin.memo_linker_bot.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import ru.plastinin.memo_linker_bot.dto.TagCount;
 import ru.plastinin.memo_linker_bot.module.SavedLinkTag;
 import ru.plastinin.memo_linker_bot.module.User;
 
 import java.util.List;
 
-public interface SavedLinkTagRepository extends JpaRepository<SavedLinkTag, Long> {
+public interface SavedLinkTagRepository extends JpaRepository<SavedLinkTag, SavedLinkTag.Key> {
 
     @Query("""
-             select slt
+             select new ru.plastinin.memo_linker_bot.dto.TagCount(t.name, count(slt))
                from SavedLinkTag slt
-              inner join SavedLink sl on (sl.linkId = slt.savedLinkLinkId)
+              inner join SavedLink sl on (sl.linkId = slt.linkId)
+              inner join slt.tag t
               where sl.user = ?1
+              group by slt.tagId, t.name
+              order by count(slt) desc, t.name
+              LIMIT ?2
             """)
-    List<SavedLinkTag> findAllTags(User user);
+    List<TagCount> findTopTagCounts(User user, int limit);
+
+    @Query("""
+             select count(distinct slt.tagId)
+               from SavedLinkTag slt
+              inner join SavedLink sl on (sl.linkId = slt.linkId)
+              where sl.user = ?1
+            """)
+    long countDistinctTags(User user);
 }
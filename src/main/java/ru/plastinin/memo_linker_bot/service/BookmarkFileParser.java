@@ -0,0 +1,303 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+import ru.plastinin.memo_linker_bot.dto.Bookmark;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Потоковый разбор файлов закладок
+ * Файл не загружается в память целиком: закладки передаются получателю по мере чтения.
+ * Поддерживаются Netscape HTML (экспорт закладок браузеров), JSON (Chrome, Firefox, массив объектов,
+ * JSON Lines выгрузки /export) и CSV с колонками url, title, tags. Файлы в gzip распаковываются на лету.
+ */
+class BookmarkFileParser {
+
+    enum Format {
+        HTML, JSON, CSV
+    }
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private BookmarkFileParser() {
+    }
+
+    /**
+     * Поток файла с поддержкой mark / reset, gzip распаковывается
+     *
+     * @param input содержимое файла
+     * @return InputStream
+     */
+    static InputStream open(InputStream input) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(input);
+        buffered.mark(2);
+        int first = buffered.read();
+        int second = buffered.read();
+        buffered.reset();
+        if (first == 0x1f && second == 0x8b) {
+            return new BufferedInputStream(new GZIPInputStream(buffered));
+        }
+        return buffered;
+    }
+
+    /**
+     * Формат файла по расширению, а если оно неизвестно - по первому символу
+     *
+     * @param fileName имя файла
+     * @param input    поток с поддержкой mark / reset
+     * @return Format
+     */
+    static Format detectFormat(String fileName, InputStream input) throws IOException {
+        String name = fileName == null ? "" : fileName.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".gz")) {
+            name = name.substring(0, name.length() - 3);
+        }
+        if (name.endsWith(".html") || name.endsWith(".htm")) {
+            return Format.HTML;
+        }
+        if (name.endsWith(".json") || name.endsWith(".jsonl")) {
+            return Format.JSON;
+        }
+        if (name.endsWith(".csv")) {
+            return Format.CSV;
+        }
+        input.mark(1024);
+        try {
+            for (int i = 0, b = input.read(); i < 1024 && b != -1; i++, b = input.read()) {
+                if (b == '<') {
+                    return Format.HTML;
+                }
+                if (b == '{' || b == '[') {
+                    return Format.JSON;
+                }
+                if (!Character.isWhitespace(b) && b != 0xEF && b != 0xBB && b != 0xBF) {
+                    break;
+                }
+            }
+            return Format.CSV;
+        } finally {
+            input.reset();
+        }
+    }
+
+    /**
+     * Разбор файла
+     *
+     * @param format   формат файла
+     * @param input    содержимое файла
+     * @param consumer получатель закладок
+     */
+    static void parse(Format format, InputStream input, Consumer<Bookmark> consumer) throws IOException {
+        switch (format) {
+            case HTML -> parseHtml(input, consumer);
+            case JSON -> parseJson(input, consumer);
+            case CSV -> parseCsv(input, consumer);
+        }
+    }
+
+    /**
+     * Netscape HTML: &lt;DT&gt;&lt;A HREF="..." TAGS="a,b"&gt;Заголовок&lt;/A&gt;
+     */
+    private static void parseHtml(InputStream input, Consumer<Bookmark> consumer) throws IOException {
+        Reader reader = new InputStreamReader(input, StandardCharsets.UTF_8);
+        try (StreamParser streamer = new StreamParser(Parser.htmlParser()).parse(reader, "")) {
+            Iterator<Element> elements = streamer.stream().iterator();
+            while (elements.hasNext()) {
+                Element element = elements.next();
+                if (element.normalName().equals("a") && element.hasAttr("href")) {
+                    consumer.accept(new Bookmark(element.attr("href"), element.text(), splitTags(element.attr("tags"))));
+                }
+                // Разобранные элементы не нужны: документ в памяти не растет
+                element.remove();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * JSON: закладкой считается любой объект с полем url (uri, href),
+     * вложенные папки (children и т.п.) обходятся рекурсивно
+     */
+    private static void parseJson(InputStream input, Consumer<Bookmark> consumer) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(input)) {
+            // В JSON Lines значений верхнего уровня несколько
+            while (parser.nextToken() != null) {
+                readJsonValue(parser, consumer);
+            }
+        }
+    }
+
+    private static void readJsonValue(JsonParser parser, Consumer<Bookmark> consumer) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_ARRAY) {
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                readJsonValue(parser, consumer);
+            }
+        } else if (token == JsonToken.START_OBJECT) {
+            readJsonObject(parser, consumer);
+        }
+    }
+
+    private static void readJsonObject(JsonParser parser, Consumer<Bookmark> consumer) throws IOException {
+        String url = null;
+        String title = null;
+        List<String> tags = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "url", "uri", "href" -> {
+                    if (value == JsonToken.VALUE_STRING) {
+                        url = parser.getText();
+                    } else {
+                        readJsonValue(parser, consumer);
+                    }
+                }
+                case "title", "name" -> {
+                    if (value == JsonToken.VALUE_STRING) {
+                        title = parser.getText();
+                    } else {
+                        readJsonValue(parser, consumer);
+                    }
+                }
+                case "tags" -> {
+                    if (value == JsonToken.VALUE_STRING) {
+                        tags.addAll(splitTags(parser.getText()));
+                    } else if (value == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            if (parser.currentToken() == JsonToken.VALUE_STRING) {
+                                tags.addAll(splitTags(parser.getText()));
+                            } else {
+                                parser.skipChildren();
+                            }
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                default -> readJsonValue(parser, consumer);
+            }
+        }
+        if (url != null) {
+            consumer.accept(new Bookmark(url, title, tags));
+        }
+    }
+
+    /**
+     * CSV: первая строка - заголовок с колонками url (link, href), title (name), tags.
+     * Если заголовка нет, колонки идут в порядке url, title, tags.
+     * Разделитель - запятая или точка с запятой, значения в кавычках поддерживаются в пределах строки.
+     */
+    private static void parseCsv(InputStream input, Consumer<Bookmark> consumer) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        String line = reader.readLine();
+        if (line == null) {
+            return;
+        }
+        // Пропустим BOM, который добавляют табличные редакторы
+        if (line.startsWith("\uFEFF")) {
+            line = line.substring(1);
+        }
+        char separator = count(line, ';') > count(line, ',') ? ';' : ',';
+
+        int urlColumn = 0;
+        int titleColumn = 1;
+        int tagsColumn = 2;
+        List<String> header = splitCsvLine(line, separator);
+        if (!header.isEmpty() && !header.getFirst().contains("://")) {
+            urlColumn = titleColumn = tagsColumn = -1;
+            for (int i = 0; i < header.size(); i++) {
+                switch (header.get(i).trim().toLowerCase(Locale.ROOT)) {
+                    case "url", "link", "href", "uri" -> urlColumn = urlColumn == -1 ? i : urlColumn;
+                    case "title", "name" -> titleColumn = titleColumn == -1 ? i : titleColumn;
+                    case "tags", "tag" -> tagsColumn = tagsColumn == -1 ? i : tagsColumn;
+                    default -> {
+                    }
+                }
+            }
+            if (urlColumn == -1) {
+                throw new IOException("В заголовке CSV нет колонки url");
+            }
+            line = reader.readLine();
+        }
+        for (; line != null; line = reader.readLine()) {
+            if (line.isBlank()) {
+                continue;
+            }
+            List<String> cells = splitCsvLine(line, separator);
+            String url = cell(cells, urlColumn);
+            if (url != null && !url.isBlank()) {
+                consumer.accept(new Bookmark(url.trim(), cell(cells, titleColumn), splitTags(cell(cells, tagsColumn))));
+            }
+        }
+    }
+
+    private static List<String> splitCsvLine(String line, char separator) {
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    cell.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    cell.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == separator) {
+                cells.add(cell.toString());
+                cell.setLength(0);
+            } else {
+                cell.append(c);
+            }
+        }
+        cells.add(cell.toString());
+        return cells;
+    }
+
+    private static String cell(List<String> cells, int column) {
+        return column >= 0 && column < cells.size() ? cells.get(column) : null;
+    }
+
+    private static int count(String line, char c) {
+        int count = 0;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == c) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Теги из строки вида "java, spring #boot" или "java|spring" (CSV Pocket)
+     */
+    private static List<String> splitTags(String text) {
+        List<String> tags = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return tags;
+        }
+        for (String tag : text.split("[,;|\\s]+")) {
+            String trimmed = tag.replace("#", "");
+            if (!trimmed.isEmpty()) {
+                tags.add(trimmed);
+            }
+        }
+        return tags;
+    }
+}
@@ -0,0 +1,382 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.plastinin.memo_linker_bot.constants.MessageConstants;
+import ru.plastinin.memo_linker_bot.dto.Bookmark;
+import ru.plastinin.memo_linker_bot.dto.PageMetadata;
+import ru.plastinin.memo_linker_bot.module.ImportJob;
+import ru.plastinin.memo_linker_bot.module.SavedLink;
+import ru.plastinin.memo_linker_bot.module.User;
+import ru.plastinin.memo_linker_bot.module.UuidV7;
+import ru.plastinin.memo_linker_bot.repository.ImportJobRepository;
+
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Импорт закладок из файла (/import)
+ * Файл разбирается потоково, закладки обрабатываются пачками: страницы пачки загружаются
+ * параллельно с ограничением на хост, ссылки и теги вставляются пакетными запросами JDBC
+ * в одной транзакции с отметкой о ходе задания. После перезапуска задание продолжается
+ * с первой необработанной записи файла. Ссылка, сохраненная другим способом во время загрузки
+ * страниц пачки, пропускается как дубликат.
+ */
+@Service
+@Slf4j
+public class BookmarkImportService {
+
+    private static final int BATCH_SIZE = 100;
+    private static final int MAX_URL_LENGTH = 2048;
+    private static final int MAX_TITLE_LENGTH = 5000;
+    private static final int MAX_TAG_LENGTH = 250;
+
+    private final ImportJobRepository importJobRepository;
+    private final PageMetadataCache pageMetadataCache;
+    private final UrlCanonicalizer urlCanonicalizer;
+    private final LinkSearchBackend linkSearchBackend;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TagDictionary tagDictionary;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Ограничение одновременных загрузок страниц всеми заданиями
+    private final Semaphore fetchPermits;
+    // Ограничение одновременных загрузок с одного хоста
+    private final int perHostConcurrency;
+    private final Cache<String, Semaphore> hostPermits = Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofMinutes(10))
+            .build();
+
+    public BookmarkImportService(ImportJobRepository importJobRepository,
+                                 PageMetadataCache pageMetadataCache,
+                                 UrlCanonicalizer urlCanonicalizer,
+                                 LinkSearchBackend linkSearchBackend,
+                                 NamedParameterJdbcTemplate jdbcTemplate,
+                                 TagDictionary tagDictionary,
+                                 TransactionTemplate transactionTemplate,
+                                 @Value("${bot.import.max-concurrency:16}") int maxConcurrency,
+                                 @Value("${bot.import.per-host-concurrency:2}") int perHostConcurrency) {
+        this.importJobRepository = importJobRepository;
+        this.pageMetadataCache = pageMetadataCache;
+        this.urlCanonicalizer = urlCanonicalizer;
+        this.linkSearchBackend = linkSearchBackend;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.tagDictionary = tagDictionary;
+        this.fetchPermits = new Semaphore(maxConcurrency);
+        this.perHostConcurrency = perHostConcurrency;
+    }
+
+    /**
+     * Запустить импорт файла
+     *
+     * @param user      User
+     * @param chatId    Long
+     * @param fileId    идентификатор файла в телеграмме
+     * @param fileName  имя файла
+     * @param messageId сообщение для хода импорта
+     * @param feedback  ImportFeedback
+     * @return false, если у пользователя уже идет импорт
+     */
+    public boolean start(User user, Long chatId, String fileId, String fileName, Integer messageId,
+                         ImportFeedback feedback) {
+        if (importJobRepository.existsByUserAndStatus(user, ImportJob.Status.RUNNING)) {
+            return false;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        ImportJob job = importJobRepository.save(ImportJob.builder()
+                .user(user)
+                .chatId(chatId)
+                .fileId(fileId)
+                .fileName(fileName)
+                .status(ImportJob.Status.RUNNING)
+                .messageId(messageId)
+                .createdAt(now)
+                .updatedAt(now)
+                .build());
+        executor.execute(() -> run(job, feedback));
+        return true;
+    }
+
+    /**
+     * Продолжить задания, прерванные перезапуском
+     *
+     * @param feedback ImportFeedback
+     */
+    public void resumeJobs(ImportFeedback feedback) {
+        for (ImportJob job : importJobRepository.findAllByStatus(ImportJob.Status.RUNNING)) {
+            log.info("Продолжаем импорт {} с записи {}.", job.getJobId(), job.getProcessed());
+            executor.execute(() -> run(job, feedback));
+        }
+    }
+
+    private void run(ImportJob job, ImportFeedback feedback) {
+        int alreadyProcessed = job.getProcessed();
+        try (InputStream input = BookmarkFileParser.open(feedback.openFile(job.getFileId()))) {
+            BookmarkFileParser.Format format = BookmarkFileParser.detectFormat(job.getFileName(), input);
+            List<Bookmark> batch = new ArrayList<>(BATCH_SIZE);
+            int[] position = {0};
+            BookmarkFileParser.parse(format, input, bookmark -> {
+                // Записи, обработанные до перезапуска, пропускаем
+                if (position[0]++ < alreadyProcessed) {
+                    return;
+                }
+                batch.add(bookmark);
+                if (batch.size() == BATCH_SIZE) {
+                    importBatch(job, batch);
+                    batch.clear();
+                    feedback.progress(job.getChatId(), job.getMessageId(), String.format(
+                            MessageConstants.MESSAGE_IMPORT_PROGRESS, job.getProcessed(), job.getImported()));
+                }
+            });
+            if (!batch.isEmpty()) {
+                importBatch(job, batch);
+            }
+            finish(job, ImportJob.Status.DONE);
+            log.info("Импорт {} завершен: обработано {}, сохранено {}.", job.getJobId(), job.getProcessed(), job.getImported());
+            feedback.progress(job.getChatId(), job.getMessageId(), String.format(
+                    MessageConstants.MESSAGE_IMPORT_DONE, job.getProcessed(), job.getImported()));
+        } catch (Exception e) {
+            if (interrupted(e)) {
+                // Остановка приложения: задание остается RUNNING и продолжится после запуска
+                log.info("Импорт {} остановлен на записи {}.", job.getJobId(), job.getProcessed());
+                return;
+            }
+            log.error("Ошибка импорта {}: {}", job.getJobId(), e.getMessage());
+            finish(job, ImportJob.Status.FAILED);
+            feedback.progress(job.getChatId(), job.getMessageId(), String.format(
+                    MessageConstants.MESSAGE_IMPORT_FAILED, job.getProcessed(), job.getImported()));
+        }
+    }
+
+    /**
+     * Обработка пачки закладок: дубликаты отбрасываются, страницы загружаются параллельно,
+     * ссылки сохраняются вместе с отметкой о ходе задания
+     */
+    private void importBatch(ImportJob job, List<Bookmark> batch) {
+        User user = job.getUser();
+
+        // Ключ - хеш канонической ссылки, значение - ссылка из файла: она загружается и сохраняется
+        Map<String, String> urls = new LinkedHashMap<>();
+        Map<String, Bookmark> bookmarks = new HashMap<>();
+        for (Bookmark bookmark : batch) {
+            String url = bookmark.getUrl() == null ? "" : bookmark.getUrl().trim();
+            if (!url.startsWith("http://") && !url.startsWith("https://")) {
+                continue;
+            }
+            String urlHash = UrlCanonicalizer.hash(urlCanonicalizer.canonicalize(url));
+            if (url.length() <= MAX_URL_LENGTH && urls.putIfAbsent(urlHash, url) == null) {
+                bookmarks.put(urlHash, bookmark);
+            }
+        }
+        if (!urls.isEmpty()) {
+            urls.keySet().removeAll(jdbcTemplate.queryForList(
+                    "SELECT URL_HASH FROM SAVED_LINKS WHERE USER_ID = :userId AND URL_HASH IN (:hashes)",
+                    new MapSqlParameterSource()
+                            .addValue("userId", user.getUserId())
+                            .addValue("hashes", urls.keySet()),
+                    String.class));
+        }
+
+        List<Future<SavedLink>> futures = new ArrayList<>(urls.size());
+        urls.forEach((urlHash, url) ->
+                futures.add(executor.submit(() -> toSavedLink(user, url, urlHash, bookmarks.get(urlHash)))));
+        List<SavedLink> links = new ArrayList<>(futures.size());
+        for (Future<SavedLink> future : futures) {
+            try {
+                links.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Импорт прерван", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        int processed = job.getProcessed() + batch.size();
+        List<SavedLink> saved = links;
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                insertLinks(links);
+                updateProgress(job, processed, job.getImported() + links.size());
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Пока загружались страницы, ссылку мог сохранить /save или другой импорт: запись по одной
+            log.debug("Пачка импорта {} нарушила уникальность, запись по одной: {}", job.getJobId(), e.getMessage());
+            saved = insertOneByOne(links);
+            int imported = job.getImported() + saved.size();
+            transactionTemplate.executeWithoutResult(status -> updateProgress(job, processed, imported));
+        }
+        job.setProcessed(processed);
+        job.setImported(job.getImported() + saved.size());
+        saved.forEach(linkSearchBackend::onSaved);
+    }
+
+    /**
+     * Вставка ссылок по одной, дубликаты (USER_ID, URL_HASH) пропускаются
+     *
+     * @return сохраненные ссылки
+     */
+    private List<SavedLink> insertOneByOne(List<SavedLink> links) {
+        List<SavedLink> saved = new ArrayList<>(links.size());
+        for (SavedLink link : links) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> insertLinks(List.of(link)));
+                saved.add(link);
+            } catch (DataIntegrityViolationException e) {
+                if (!SavedLinkConstraints.isDuplicateLink(e)) {
+                    throw e;
+                }
+            }
+        }
+        return saved;
+    }
+
+    private void updateProgress(ImportJob job, int processed, int imported) {
+        jdbcTemplate.update("UPDATE IMPORT_JOBS SET PROCESSED = :processed, IMPORTED = :imported, "
+                        + "UPDATED_AT = :updatedAt WHERE JOB_ID = :jobId",
+                new MapSqlParameterSource()
+                        .addValue("processed", processed)
+                        .addValue("imported", imported)
+                        .addValue("updatedAt", Timestamp.valueOf(LocalDateTime.now()))
+                        .addValue("jobId", job.getJobId()));
+    }
+
+    /**
+     * Загрузка данных страницы закладки
+     * Если страницу загрузить не удалось, ссылка сохраняется с заголовком и тегами из файла
+     */
+    private SavedLink toSavedLink(User user, String url, String urlHash, Bookmark bookmark) {
+        PageMetadata page = null;
+        Semaphore hostLimit = hostPermits.get(host(url), key -> new Semaphore(perHostConcurrency));
+        try {
+            hostLimit.acquire();
+            try {
+                fetchPermits.acquire();
+                try {
+                    page = pageMetadataCache.get(url);
+                } finally {
+                    fetchPermits.release();
+                }
+            } finally {
+                hostLimit.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.debug("Не удалось загрузить {}: {}", url, e.getMessage());
+        }
+
+        String title = page != null && page.getTitle() != null && !page.getTitle().isBlank() ? page.getTitle()
+                : bookmark.getTitle() != null && !bookmark.getTitle().isBlank() ? bookmark.getTitle()
+                : url;
+        Set<String> tags = new LinkedHashSet<>();
+        for (String tag : bookmark.getTags()) {
+            if (tag.length() <= MAX_TAG_LENGTH) {
+                tags.add(tag);
+            }
+        }
+        if (page != null) {
+            tags.addAll(page.getTags());
+        }
+        return SavedLink.builder()
+                .linkId(UuidV7.generate())
+                .user(user)
+                .originUrl(url)
+                .urlHash(urlHash)
+                .title(truncate(title, MAX_TITLE_LENGTH))
+                .description(page == null ? null : truncate(page.getDescription(), MAX_TITLE_LENGTH))
+                .imageUrl(page == null || page.getImageUrl() == null || page.getImageUrl().length() > MAX_URL_LENGTH
+                        ? null : page.getImageUrl())
+                .etag(page == null ? null : page.getEtag())
+                .lastModified(page == null ? null : page.getLastModified())
+                .createdAt(LocalDateTime.now())
+                .tags(tags)
+                .build();
+    }
+
+    /**
+     * Пакетная вставка ссылок и их тегов
+     */
+    private void insertLinks(List<SavedLink> links) {
+        if (links.isEmpty()) {
+            return;
+        }
+        List<MapSqlParameterSource> linkRows = new ArrayList<>(links.size());
+        Map<UUID, Set<String>> linkTags = new LinkedHashMap<>();
+        for (SavedLink link : links) {
+            linkRows.add(new MapSqlParameterSource()
+                    .addValue("linkId", link.getLinkId())
+                    .addValue("userId", link.getUser().getUserId())
+                    .addValue("originUrl", link.getOriginUrl())
+                    .addValue("urlHash", link.getUrlHash())
+                    .addValue("title", link.getTitle())
+                    .addValue("description", link.getDescription())
+                    .addValue("imageUrl", link.getImageUrl())
+                    .addValue("etag", link.getEtag())
+                    .addValue("lastModified", link.getLastModified())
+                    .addValue("createdAt", Timestamp.valueOf(link.getCreatedAt())));
+            linkTags.put(link.getLinkId(), link.getTags());
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO SAVED_LINKS (LINK_ID, USER_ID, ORIGIN_URL, URL_HASH, TITLE, DESCRIPTION, IMAGE_URL, ETAG, LAST_MODIFIED, CREATED_AT) "
+                        + "VALUES (:linkId, :userId, :originUrl, :urlHash, :title, :description, :imageUrl, :etag, :lastModified, :createdAt)",
+                linkRows.toArray(MapSqlParameterSource[]::new));
+        tagDictionary.insertLinkTags(linkTags);
+    }
+
+    private void finish(ImportJob job, ImportJob.Status status) {
+        job.setStatus(status);
+        job.setUpdatedAt(LocalDateTime.now());
+        importJobRepository.save(job);
+    }
+
+    /**
+     * Ошибка вызвана прерыванием потока задания (shutdownNow при остановке приложения)
+     */
+    private static boolean interrupted(Exception e) {
+        if (Thread.currentThread().isInterrupted()) {
+            return true;
+        }
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedException || cause instanceof InterruptedIOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String truncate(String text, int maxLength) {
+        return text == null || text.length() <= maxLength ? text : text.substring(0, maxLength);
+    }
+
+    private static String host(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? url : host.toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Незавершенные задания остаются RUNNING и продолжатся после запуска
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,48 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бюджет фоновых загрузок страниц (обновление ссылок)
+ * Не больше bot.refresh.rate загрузок в минуту, и ни одной, пока есть незавершенные команды /save:
+ * фоновые загрузки не занимают соединения и места в ограничении хоста, нужные пользователям.
+ */
+@Component
+public class FetchBudget {
+
+    private final SaveLinkPipeline saveLinkPipeline;
+    private final long intervalNanos;
+
+    // Раньше этого времени (System.nanoTime) следующая фоновая загрузка не начинается
+    private long nextSlot = System.nanoTime();
+
+    public FetchBudget(SaveLinkPipeline saveLinkPipeline,
+                       @Value("${bot.refresh.rate:30}") int fetchesPerMinute) {
+        this.saveLinkPipeline = saveLinkPipeline;
+        this.intervalNanos = TimeUnit.MINUTES.toNanos(1) / fetchesPerMinute;
+    }
+
+    /**
+     * Дождаться своей очереди на фоновую загрузку
+     *
+     * @return false, если пользователи сохраняют ссылки и фоновую загрузку надо отложить
+     * @throws InterruptedException если ожидание прервано
+     */
+    public boolean acquire() throws InterruptedException {
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            // Неиспользованный бюджет не копится: после простоя загрузки идут с тем же интервалом
+            long slot = nextSlot - now > 0 ? nextSlot : now;
+            nextSlot = slot + intervalNanos;
+            wait = slot - now;
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+        return saveLinkPipeline.inFlight() == 0;
+    }
+}
@@ -0,0 +1,78 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import ru.plastinin.memo_linker_bot.dto.LinkView;
+import ru.plastinin.memo_linker_bot.dto.SearchQuery;
+import ru.plastinin.memo_linker_bot.dto.SearchResult;
+import ru.plastinin.memo_linker_bot.module.User;
+
+import java.util.*;
+
+/**
+ * Общая часть полнотекстового поиска средствами базы данных
+ * База возвращает идентификаторы ссылок в порядке релевантности, ссылки по тегам добавляются в конец,
+ * а полностью загружаются только ссылки, попадающие в ответ.
+ * Если полнотекстовый индекс недоступен, поиск выполняется через SavedLinkRepository.
+ */
+@Slf4j
+public abstract class FullTextSearchBackend implements LinkSearchBackend {
+
+    protected final RepositorySearchBackend fallback;
+
+    private volatile boolean available = true;
+
+    protected FullTextSearchBackend(RepositorySearchBackend fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public SearchResult search(User user, SearchQuery query, int limit) {
+        if (!available) {
+            return fallback.search(user, query, limit);
+        }
+        Set<UUID> linkIds = new LinkedHashSet<>();
+        try {
+            List<String> terms = terms(query);
+            if (!terms.isEmpty()) {
+                linkIds.addAll(findIdsByWords(user, terms, query.isAnyWord()));
+            }
+        } catch (DataAccessException e) {
+            log.error("Ошибка полнотекстового поиска, используем поиск like: {}", e.getMessage());
+            return fallback.search(user, query, limit);
+        }
+        linkIds.addAll(fallback.findIdsByTags(user, query.getTags()));
+
+        List<UUID> page = linkIds.stream().limit(limit).toList();
+        List<LinkView> links = fallback.findViews(page);
+        return new SearchResult(linkIds.size(), links);
+    }
+
+    /**
+     * Идентификаторы ссылок пользователя, найденных по словам, самые релевантные первыми
+     *
+     * @param user    User
+     * @param terms   слова запроса (только буквы и цифры)
+     * @param anyWord true - достаточно любого слова, false - нужны все слова
+     * @return List UUID
+     */
+    protected abstract List<UUID> findIdsByWords(User user, List<String> terms, boolean anyWord);
+
+    /**
+     * Отключить полнотекстовый поиск, если индекс не удалось создать
+     *
+     * @param e причина
+     */
+    protected void disable(Exception e) {
+        available = false;
+        log.error("Полнотекстовый индекс недоступен, используем поиск like: {}", e.getMessage());
+    }
+
+    private static List<String> terms(SearchQuery query) {
+        List<String> terms = new ArrayList<>();
+        for (String word : query.getWords()) {
+            terms.addAll(UserLinkIndex.tokenize(word));
+        }
+        return terms;
+    }
+}
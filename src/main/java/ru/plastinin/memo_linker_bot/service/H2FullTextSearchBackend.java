@@ -0,0 +1,71 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import ru.plastinin.memo_linker_bot.module.User;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Полнотекстовый поиск H2 (встроенный org.h2.fulltext.FullText)
+ * Индекс по заголовку и описанию создается при первом запуске и обновляется триггерами H2.
+ * Все слова запроса H2 ищет одновременно, поиск по любому из слов выполняется по одному слову за запрос.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "bot.search.backend", havingValue = "h2")
+@Slf4j
+public class H2FullTextSearchBackend extends FullTextSearchBackend {
+
+    private static final String SEARCH_SQL = """
+            SELECT s.LINK_ID
+              FROM FT_SEARCH_DATA(?, 0, 0) ft
+              JOIN SAVED_LINKS s ON s.LINK_ID = CAST(ft.KEYS[1] AS UUID)
+             WHERE ft."TABLE" = 'SAVED_LINKS'
+               AND s.USER_ID = ?
+             ORDER BY ft.SCORE DESC, s.CREATED_AT DESC
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public H2FullTextSearchBackend(RepositorySearchBackend fallback, JdbcTemplate jdbcTemplate) {
+        super(fallback);
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            jdbcTemplate.execute("CREATE ALIAS IF NOT EXISTS FT_INIT FOR 'org.h2.fulltext.FullText.init'");
+            jdbcTemplate.execute("CALL FT_INIT()");
+            Integer indexes = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM FT.INDEXES WHERE \"SCHEMA\" = 'PUBLIC' AND \"TABLE\" = 'SAVED_LINKS'", Integer.class);
+            if (indexes == null || indexes == 0) {
+                jdbcTemplate.execute("CALL FT_CREATE_INDEX('PUBLIC', 'SAVED_LINKS', 'TITLE,DESCRIPTION')");
+            }
+            log.info("Полнотекстовый индекс H2 готов.");
+        } catch (DataAccessException e) {
+            disable(e);
+        }
+    }
+
+    @Override
+    protected List<UUID> findIdsByWords(User user, List<String> terms, boolean anyWord) {
+        if (!anyWord) {
+            return jdbcTemplate.queryForList(SEARCH_SQL, UUID.class, String.join(" ", terms), user.getUserId());
+        }
+        Set<UUID> linkIds = new LinkedHashSet<>();
+        for (String term : terms) {
+            linkIds.addAll(jdbcTemplate.queryForList(SEARCH_SQL, UUID.class, term, user.getUserId()));
+        }
+        return List.copyOf(linkIds);
+    }
+}
@@ -0,0 +1,234 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Статистика загрузки страниц по хостам: время ответа и ошибки
+ * Таймаут загрузки выбирается по p99 времени последних загрузок с хоста.
+ * После failure-threshold ошибок подряд хост отключается (цепь размыкается) на open-duration,
+ * затем пропускается одна пробная загрузка: успех замыкает цепь, ошибка снова размыкает.
+ */
+@Component
+@Slf4j
+public class HostHealthRegistry {
+
+    /**
+     * Состояние цепи хоста
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * Состояние хоста для actuator
+     *
+     * @param state      состояние цепи
+     * @param failures   ошибок подряд
+     * @param samples    загрузок в статистике времени
+     * @param p50Millis  медиана времени загрузки
+     * @param p99Millis  p99 времени загрузки
+     * @param timeout    текущий таймаут загрузки
+     * @param openUntil  до какого времени хост отключен
+     * @param lastError  последняя ошибка
+     */
+    public record HostStatus(State state, int failures, int samples, long p50Millis, long p99Millis,
+                             Duration timeout, Instant openUntil, String lastError) {
+    }
+
+    // Сколько последних загрузок хоста учитывается в статистике времени
+    private static final int WINDOW = 32;
+    // Меньше загрузок - таймаут по умолчанию
+    private static final int MIN_SAMPLES = 5;
+
+    private final Duration defaultTimeout;
+    private final Duration minTimeout;
+    private final double timeoutMultiplier;
+    private final int failureThreshold;
+    private final Duration openDuration;
+
+    private final Cache<String, HostStats> hosts;
+
+    public HostHealthRegistry(MeterRegistry meterRegistry,
+                              @Value("${bot.http.call-timeout:PT60S}") Duration defaultTimeout,
+                              @Value("${bot.http.adaptive.min-timeout:PT3S}") Duration minTimeout,
+                              @Value("${bot.http.adaptive.multiplier:3}") double timeoutMultiplier,
+                              @Value("${bot.http.circuit.failure-threshold:5}") int failureThreshold,
+                              @Value("${bot.http.circuit.open-duration:PT5M}") Duration openDuration,
+                              @Value("${bot.http.hosts.max-size:10000}") long maxHosts) {
+        this.defaultTimeout = defaultTimeout;
+        this.minTimeout = minTimeout;
+        this.timeoutMultiplier = timeoutMultiplier;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.hosts = Caffeine.newBuilder()
+                .maximumSize(maxHosts)
+                .expireAfterAccess(Duration.ofHours(6))
+                .build();
+        Gauge.builder("memo.http.circuit.open", this, HostHealthRegistry::openCount)
+                .description("Хосты с разомкнутой цепью: загрузка страниц не выполняется")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Можно ли загружать страницу с хоста
+     * Когда время отключения прошло, пропускается одна пробная загрузка
+     *
+     * @param host хост
+     * @return false, если цепь хоста разомкнута
+     */
+    public boolean allow(String host) {
+        HostStats stats = hosts.getIfPresent(host);
+        return stats == null || stats.allow(Instant.now());
+    }
+
+    /**
+     * Таймаут загрузки с хоста: p99 времени последних загрузок с запасом,
+     * но не меньше min-timeout и не больше bot.http.call-timeout
+     *
+     * @param host хост
+     * @return Duration
+     */
+    public Duration timeout(String host) {
+        HostStats stats = hosts.getIfPresent(host);
+        return stats == null ? defaultTimeout : stats.timeout();
+    }
+
+    /**
+     * Страница загружена
+     *
+     * @param host    хост
+     * @param elapsed время загрузки
+     */
+    public void success(String host, Duration elapsed) {
+        hosts.get(host, key -> new HostStats()).success(elapsed.toMillis());
+    }
+
+    /**
+     * Страницу не удалось загрузить: ошибка соединения, таймаут или ответ 5xx
+     *
+     * @param host  хост
+     * @param error описание ошибки
+     */
+    public void failure(String host, String error) {
+        hosts.get(host, key -> new HostStats()).failure(host, error, Instant.now());
+    }
+
+    /**
+     * Замкнуть цепь хоста и сбросить его статистику
+     *
+     * @param host хост
+     * @return true, если хост был в статистике
+     */
+    public boolean reset(String host) {
+        boolean present = hosts.getIfPresent(host) != null;
+        hosts.invalidate(host);
+        return present;
+    }
+
+    /**
+     * Состояние хостов, отсортированное по имени
+     *
+     * @param onlyUnhealthy только хосты с ошибками или разомкнутой цепью
+     * @return Map
+     */
+    public Map<String, HostStatus> status(boolean onlyUnhealthy) {
+        Map<String, HostStatus> result = new TreeMap<>();
+        hosts.asMap().forEach((host, stats) -> {
+            HostStatus status = stats.status();
+            if (!onlyUnhealthy || status.failures() > 0 || status.state() != State.CLOSED) {
+                result.put(host, status);
+            }
+        });
+        return result;
+    }
+
+    private long openCount() {
+        return hosts.asMap().values().stream()
+                .filter(stats -> stats.status().state() != State.CLOSED)
+                .count();
+    }
+
+    /**
+     * Статистика одного хоста
+     */
+    private final class HostStats {
+
+        private final long[] latencies = new long[WINDOW];
+        private int samples;
+        private int next;
+
+        private int failures;
+        private State state = State.CLOSED;
+        private Instant openUntil;
+        private String lastError;
+
+        synchronized boolean allow(Instant now) {
+            return switch (state) {
+                case CLOSED -> true;
+                case OPEN -> {
+                    if (now.isBefore(openUntil)) {
+                        yield false;
+                    }
+                    state = State.HALF_OPEN;
+                    yield true;
+                }
+                // Пробная загрузка уже выполняется
+                case HALF_OPEN -> false;
+            };
+        }
+
+        synchronized void success(long millis) {
+            latencies[next] = millis;
+            next = (next + 1) % WINDOW;
+            samples = Math.min(samples + 1, WINDOW);
+            failures = 0;
+            state = State.CLOSED;
+            openUntil = null;
+        }
+
+        synchronized void failure(String host, String error, Instant now) {
+            failures++;
+            lastError = error;
+            if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= failureThreshold)) {
+                state = State.OPEN;
+                openUntil = now.plus(openDuration);
+                log.warn("Загрузка страниц с {} отключена до {}: {} ошибок подряд, последняя: {}",
+                        host, openUntil, failures, error);
+            }
+        }
+
+        synchronized Duration timeout() {
+            if (samples < MIN_SAMPLES) {
+                return defaultTimeout;
+            }
+            long millis = (long) (percentile(0.99) * timeoutMultiplier);
+            return Duration.ofMillis(Math.clamp(millis, minTimeout.toMillis(), defaultTimeout.toMillis()));
+        }
+
+        synchronized HostStatus status() {
+            return new HostStatus(state, failures, samples, percentile(0.50), percentile(0.99), timeout(),
+                    openUntil, lastError);
+        }
+
+        private long percentile(double quantile) {
+            if (samples == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(latencies, samples);
+            Arrays.sort(sorted);
+            return sorted[Math.max(0, (int) Math.ceil(quantile * samples) - 1)];
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Связь импорта закладок с телеграммом: загрузка файла и сообщения о ходе импорта
+ */
+public interface ImportFeedback {
+
+    /**
+     * Открыть загруженный пользователем файл
+     *
+     * @param fileId идентификатор файла в телеграмме
+     * @return InputStream
+     */
+    InputStream openFile(String fileId) throws IOException;
+
+    /**
+     * Показать ход импорта
+     *
+     * @param chatId    Long
+     * @param messageId сообщение, которое заменяется, или null
+     * @param text      String
+     */
+    void progress(Long chatId, Integer messageId, String text);
+
+}
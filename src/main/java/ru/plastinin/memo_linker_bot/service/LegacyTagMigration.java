@@ -0,0 +1,45 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Перенос тегов из прежней таблицы SAVED_LINK_TAGS (строка тега в каждой строке) в TAGS и LINK_TAGS
+ * Выполняется при запуске, только если прежняя таблица еще есть, и удаляет ее в той же транзакции:
+ * после первого запуска остается одна проверка наличия таблицы.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class LegacyTagMigration {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void start() {
+        // Имя таблицы в H2 хранится заглавными буквами, в PostgreSQL - строчными
+        Integer tables = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES"
+                + " WHERE UPPER(TABLE_NAME) = 'SAVED_LINK_TAGS'", Integer.class);
+        if (tables == null || tables == 0) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            int tags = jdbcTemplate.update("""
+                    INSERT INTO TAGS (NAME)
+                    SELECT DISTINCT slt.TAGS FROM SAVED_LINK_TAGS slt
+                     WHERE NOT EXISTS (SELECT 1 FROM TAGS t WHERE t.NAME = slt.TAGS)""");
+            int linkTags = jdbcTemplate.update("""
+                    INSERT INTO LINK_TAGS (LINK_ID, TAG_ID)
+                    SELECT DISTINCT slt.SAVED_LINK_LINK_ID, t.TAG_ID FROM SAVED_LINK_TAGS slt
+                      JOIN TAGS t ON t.NAME = slt.TAGS
+                     WHERE NOT EXISTS (SELECT 1 FROM LINK_TAGS lt WHERE lt.LINK_ID = slt.SAVED_LINK_LINK_ID AND lt.TAG_ID = t.TAG_ID)""");
+            jdbcTemplate.execute("DROP TABLE SAVED_LINK_TAGS");
+            log.info("Теги перенесены из SAVED_LINK_TAGS: новых тегов {}, тегов ссылок {}.", tags, linkTags);
+        });
+    }
+}
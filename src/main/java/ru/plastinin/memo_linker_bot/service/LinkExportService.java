@@ -0,0 +1,304 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.nodes.Entities;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+import ru.plastinin.memo_linker_bot.dto.ExportFile;
+import ru.plastinin.memo_linker_bot.dto.LinkExportRow;
+import ru.plastinin.memo_linker_bot.module.User;
+import ru.plastinin.memo_linker_bot.repository.SavedLinkRepository;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Выгрузка всех ссылок пользователя (/export)
+ * Ссылки читаются курсором из SavedLinkRepository и сразу пишутся в поток файла,
+ * который отправляется в телеграмм по мере формирования: расход памяти не зависит
+ * от количества ссылок. Оба формата сжимаются gzip: Telegram принимает от бота файлы
+ * не больше 50 МБ, выгрузка больше bot.export.max-file-size прерывается.
+ * Неработающие ссылки отмечаются полем dead (JSON) и атрибутом DEAD (HTML).
+ */
+@Service
+@Slf4j
+public class LinkExportService {
+
+    public enum Format {
+        // JSON Lines в gzip, формат понимает /import
+        JSON,
+        // Netscape HTML в gzip, импортируется браузерами после распаковки
+        HTML
+    }
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int PIPE_BUFFER_SIZE = 64 * 1024;
+    private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final SavedLinkRepository savedLinkRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final long maxFileSize;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public LinkExportService(SavedLinkRepository savedLinkRepository, PlatformTransactionManager transactionManager,
+                             @Value("${bot.export.max-file-size:50MB}") DataSize maxFileSize) {
+        this.savedLinkRepository = savedLinkRepository;
+        this.maxFileSize = maxFileSize.toBytes();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Файл выгрузки ссылок пользователя
+     * Содержимое пишется в отдельном потоке по мере чтения. Поток содержимого нужно закрыть:
+     * после этого запись прекращается и транзакция чтения завершается.
+     *
+     * @param user   User
+     * @param format Format
+     * @return ExportFile
+     */
+    public ExportFile export(User user, Format format) throws IOException {
+        PipedInputStream pipe = new PipedInputStream(PIPE_BUFFER_SIZE);
+        PipedOutputStream output = new PipedOutputStream(pipe);
+        ExportInputStream content = new ExportInputStream(pipe, maxFileSize);
+        executor.execute(() -> {
+            try {
+                write(user, format, output);
+            } catch (Exception e) {
+                log.error("Ошибка выгрузки ссылок пользователя {}: {}", user.getUserId(), e.getMessage());
+                // Ошибку отмечаем до закрытия потока, чтобы читатель не принял обрыв за конец файла
+                content.failure = e;
+            } finally {
+                try {
+                    output.close();
+                } catch (IOException e) {
+                    log.debug("Ошибка закрытия потока выгрузки: {}", e.getMessage());
+                }
+            }
+        });
+        return new ExportFile(fileName(format), content);
+    }
+
+    /**
+     * Выгрузка прервана из-за размера файла
+     *
+     * @param error исключение, которым завершилась отправка файла
+     * @return boolean
+     */
+    public static boolean isTooLarge(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof FileTooLargeException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Запись всех ссылок пользователя в поток
+     *
+     * @param user   User
+     * @param format Format
+     * @param output поток файла
+     */
+    public void write(User user, Format format, OutputStream output) {
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<LinkExportRow> rows = savedLinkRepository.streamExportRows(user)) {
+                switch (format) {
+                    case JSON -> writeJsonLines(rows.iterator(), output);
+                    case HTML -> writeHtml(rows.iterator(), output);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private void writeJsonLines(Iterator<LinkExportRow> rows, OutputStream output) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(output, 8192);
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(gzip, JsonEncoding.UTF8)) {
+            generator.setRootValueSeparator(null);
+            forEachLink(rows, (link, tags) -> {
+                generator.writeStartObject();
+                generator.writeStringField("url", link.getOriginUrl());
+                generator.writeStringField("title", link.getTitle());
+                if (link.getDescription() != null) {
+                    generator.writeStringField("description", link.getDescription());
+                }
+                if (link.getCreatedAt() != null) {
+                    generator.writeStringField("created_at", link.getCreatedAt().toString());
+                }
+                if (link.isDead()) {
+                    generator.writeBooleanField("dead", true);
+                }
+                generator.writeArrayFieldStart("tags");
+                for (String tag : tags) {
+                    generator.writeString(tag);
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            });
+        }
+    }
+
+    private void writeHtml(Iterator<LinkExportRow> rows, OutputStream output) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(output, 8192), StandardCharsets.UTF_8));
+        writer.write("""
+                <!DOCTYPE NETSCAPE-Bookmark-file-1>
+                <META HTTP-EQUIV="Content-Type" CONTENT="text/html; charset=UTF-8">
+                <TITLE>Bookmarks</TITLE>
+                <H1>Memo Linker</H1>
+                <DL><p>
+                """);
+        forEachLink(rows, (link, tags) -> {
+            writer.write("    <DT><A HREF=\"");
+            writer.write(Entities.escape(link.getOriginUrl()));
+            writer.write('"');
+            if (link.getCreatedAt() != null) {
+                writer.write(" ADD_DATE=\"");
+                writer.write(Long.toString(link.getCreatedAt().atZone(ZoneId.systemDefault()).toEpochSecond()));
+                writer.write('"');
+            }
+            if (!tags.isEmpty()) {
+                writer.write(" TAGS=\"");
+                writer.write(Entities.escape(String.join(",", tags)));
+                writer.write('"');
+            }
+            if (link.isDead()) {
+                // Нестандартный атрибут, браузеры его пропускают
+                writer.write(" DEAD=\"1\"");
+            }
+            writer.write('>');
+            writer.write(Entities.escape(link.getTitle() == null ? link.getOriginUrl() : link.getTitle()));
+            writer.write("</A>\n");
+            if (link.getDescription() != null && !link.getDescription().isBlank()) {
+                writer.write("    <DD>");
+                writer.write(Entities.escape(link.getDescription()));
+                writer.write('\n');
+            }
+        });
+        writer.write("</DL><p>\n");
+        // Закрытие дописывает конец gzip
+        writer.close();
+    }
+
+    /**
+     * Сборка ссылок из строк запроса: строки одной ссылки идут подряд,
+     * поэтому в памяти хранится только текущая ссылка
+     */
+    private void forEachLink(Iterator<LinkExportRow> rows, LinkWriter linkWriter) throws IOException {
+        LinkExportRow current = null;
+        List<String> tags = new ArrayList<>();
+        while (rows.hasNext()) {
+            LinkExportRow row = rows.next();
+            if (current != null && !current.getLinkId().equals(row.getLinkId())) {
+                linkWriter.write(current, tags);
+                tags.clear();
+            }
+            current = row;
+            if (row.getTag() != null) {
+                tags.add(row.getTag());
+            }
+        }
+        if (current != null) {
+            linkWriter.write(current, tags);
+        }
+    }
+
+    private static String fileName(Format format) {
+        String name = "memo-links-" + LocalDate.now().format(FILE_DATE);
+        return format == Format.HTML ? name + ".html.gz" : name + ".jsonl.gz";
+    }
+
+    @FunctionalInterface
+    private interface LinkWriter {
+        void write(LinkExportRow link, List<String> tags) throws IOException;
+    }
+
+    /**
+     * Содержимое файла выгрузки
+     * Если запись прервалась ошибкой, конец потока превращается в ошибку чтения,
+     * чтобы неполный файл не был отправлен. Чтение больше maxSize байт тоже ошибка:
+     * такой файл Telegram все равно не примет.
+     */
+    private static class ExportInputStream extends FilterInputStream {
+
+        private final long maxSize;
+        private long size;
+
+        private volatile Exception failure;
+
+        ExportInputStream(InputStream input, long maxSize) {
+            super(input);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                checkFailure();
+            } else {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            if (count == -1) {
+                checkFailure();
+            } else {
+                count(count);
+            }
+            return count;
+        }
+
+        private void count(int bytes) throws IOException {
+            size += bytes;
+            if (size > maxSize) {
+                throw new FileTooLargeException("Файл выгрузки больше " + maxSize + " байт");
+            }
+        }
+
+        private void checkFailure() throws IOException {
+            if (failure != null) {
+                throw new IOException("Выгрузка прервана: " + failure.getMessage(), failure);
+            }
+        }
+    }
+
+    private static class FileTooLargeException extends IOException {
+
+        FileTooLargeException(String message) {
+            super(message);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
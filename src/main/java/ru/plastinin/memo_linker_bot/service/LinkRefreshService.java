@@ -0,0 +1,279 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.plastinin.memo_linker_bot.dto.PageMetadata;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Фоновое обновление сохраненных ссылок
+ * По расписанию проходит ссылки пачками по LINK_ID и проверяет те, что не проверялись дольше bot.refresh.max-age.
+ * Страница запрашивается условно (If-None-Match / If-Modified-Since по сохраненным ETag и Last-Modified):
+ * ответ 304 - страница не изменилась. Если заголовок, описание или картинка изменились, они обновляются,
+ * а новые авто-теги добавляются (старые теги остаются: пользовательские от авто-тегов не отличить).
+ * Ответ 404/410 или bot.refresh.dead-after ошибок подряд (5xx, сетевые ошибки) помечают ссылку неработающей (DEAD).
+ * Остальные ответы 4xx (401, 403, 429...) - сайт не пускает бота, а не удаленная страница: ошибкой не считаются.
+ * Загрузки идут в пределах FetchBudget и не конкурируют с командами /save.
+ */
+@Service
+@ConditionalOnProperty(name = "bot.refresh.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class LinkRefreshService {
+
+    private static final int MAX_TEXT_LENGTH = 5000;
+    private static final int MAX_URL_LENGTH = 2048;
+    private static final int MAX_TAG_LENGTH = 250;
+
+    /**
+     * Результат проверки ссылки
+     */
+    enum Result {
+        NOT_MODIFIED, UNCHANGED, CHANGED, REFUSED, FAILED, DEAD, SKIPPED
+    }
+
+    /**
+     * Ссылка для проверки
+     */
+    record LinkRow(UUID linkId, UUID userId, String url, String title, String description, String imageUrl,
+                   String etag, String lastModified, int failCount, boolean dead) {
+    }
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PageFetcher pageFetcher;
+    private final PageParserService pageParserService;
+    private final FetchBudget fetchBudget;
+    private final LinkSearchBackend linkSearchBackend;
+    private final TagDictionary tagDictionary;
+    private final MeterRegistry meterRegistry;
+
+    private final int batchSize;
+    private final Duration maxAge;
+    private final int deadAfter;
+
+    // Последняя проверенная ссылка: следующий запуск продолжает проход с нее
+    private UUID lastLinkId;
+
+    public LinkRefreshService(NamedParameterJdbcTemplate jdbcTemplate,
+                              TransactionTemplate transactionTemplate,
+                              PageFetcher pageFetcher,
+                              PageParserService pageParserService,
+                              FetchBudget fetchBudget,
+                              LinkSearchBackend linkSearchBackend,
+                              TagDictionary tagDictionary,
+                              MeterRegistry meterRegistry,
+                              @Value("${bot.refresh.batch-size:50}") int batchSize,
+                              @Value("${bot.refresh.max-age:P7D}") Duration maxAge,
+                              @Value("${bot.refresh.dead-after:3}") int deadAfter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.pageFetcher = pageFetcher;
+        this.pageParserService = pageParserService;
+        this.fetchBudget = fetchBudget;
+        this.linkSearchBackend = linkSearchBackend;
+        this.tagDictionary = tagDictionary;
+        this.meterRegistry = meterRegistry;
+        this.batchSize = batchSize;
+        this.maxAge = maxAge;
+        this.deadAfter = deadAfter;
+    }
+
+    /**
+     * Проверить очередную пачку ссылок
+     * Пачка прерывается, как только пользователи начинают сохранять ссылки
+     */
+    @Scheduled(initialDelayString = "${bot.refresh.interval:PT1M}", fixedDelayString = "${bot.refresh.interval:PT1M}")
+    public void refresh() {
+        List<LinkRow> links = nextBatch(LocalDateTime.now().minus(maxAge));
+        if (links.isEmpty()) {
+            // Проход закончен, следующий начнется с начала
+            lastLinkId = null;
+            return;
+        }
+        Map<Result, Integer> results = new EnumMap<>(Result.class);
+        try {
+            for (LinkRow link : links) {
+                if (!fetchBudget.acquire()) {
+                    break;
+                }
+                Result result = check(link);
+                results.merge(result, 1, Integer::sum);
+                Counter.builder("memo.refresh.checks")
+                        .description("Фоновые проверки сохраненных ссылок")
+                        .tag("result", result.name().toLowerCase(Locale.ROOT))
+                        .register(meterRegistry)
+                        .increment();
+                lastLinkId = link.linkId();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.debug("Проверено ссылок: {}", results);
+    }
+
+    private List<LinkRow> nextBatch(LocalDateTime checkedBefore) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("checkedBefore", Timestamp.valueOf(checkedBefore))
+                .addValue("lastLinkId", lastLinkId)
+                .addValue("limit", batchSize);
+        return jdbcTemplate.query(
+                "SELECT LINK_ID, USER_ID, ORIGIN_URL, TITLE, DESCRIPTION, IMAGE_URL, ETAG, LAST_MODIFIED, FAIL_COUNT, DEAD"
+                        + " FROM SAVED_LINKS"
+                        + " WHERE (CHECKED_AT IS NULL OR CHECKED_AT < :checkedBefore) AND CREATED_AT < :checkedBefore"
+                        + (lastLinkId == null ? "" : " AND LINK_ID > :lastLinkId")
+                        + " ORDER BY LINK_ID LIMIT :limit", params,
+                (rs, rowNum) -> new LinkRow(
+                        rs.getObject("LINK_ID", UUID.class),
+                        rs.getObject("USER_ID", UUID.class),
+                        rs.getString("ORIGIN_URL"),
+                        rs.getString("TITLE"),
+                        rs.getString("DESCRIPTION"),
+                        rs.getString("IMAGE_URL"),
+                        rs.getString("ETAG"),
+                        rs.getString("LAST_MODIFIED"),
+                        rs.getInt("FAIL_COUNT"),
+                        rs.getBoolean("DEAD")));
+    }
+
+    /**
+     * Проверить одну ссылку и сохранить результат
+     *
+     * @param link LinkRow
+     * @return Result
+     */
+    Result check(LinkRow link) {
+        PageMetadata metadata;
+        try (PageFetcher.Page page = pageFetcher.fetch(link.url(), link.etag(), link.lastModified())) {
+            int status = page.status();
+            if (status == 304) {
+                markAlive(link, link.etag(), link.lastModified());
+                return Result.NOT_MODIFIED;
+            }
+            if (status == 404 || status == 410) {
+                return markFailed(link, true);
+            }
+            if (status >= 500) {
+                return markFailed(link, false);
+            }
+            if (status >= 400) {
+                // Доступ запрещен или слишком много запросов: состояние ссылки не меняем до следующего прохода
+                markChecked(link);
+                return Result.REFUSED;
+            }
+            metadata = pageParserService.read(page);
+        } catch (PageFetcher.HostUnavailableException e) {
+            // Сайт отключен после ошибок: проверим ссылку в следующем проходе
+            return Result.SKIPPED;
+        } catch (IOException | RuntimeException e) {
+            log.debug("Не удалось проверить {}: {}", link.url(), e.getMessage());
+            return markFailed(link, false);
+        }
+
+        String title = changed(link.title(), truncate(metadata.getTitle()));
+        String description = changed(link.description(), truncate(metadata.getDescription()));
+        String imageUrl = metadata.getImageUrl() == null || metadata.getImageUrl().length() > MAX_URL_LENGTH
+                ? null : changed(link.imageUrl(), metadata.getImageUrl());
+        if (title == null && description == null && imageUrl == null) {
+            markAlive(link, metadata.getEtag(), metadata.getLastModified());
+            return Result.UNCHANGED;
+        }
+        transactionTemplate.executeWithoutResult(status -> update(link, metadata,
+                title == null ? link.title() : title,
+                description == null ? link.description() : description,
+                imageUrl == null ? link.imageUrl() : imageUrl));
+        linkSearchBackend.onUpdated(link.userId());
+        return Result.CHANGED;
+    }
+
+    private void update(LinkRow link, PageMetadata metadata, String title, String description, String imageUrl) {
+        jdbcTemplate.update("UPDATE SAVED_LINKS SET TITLE = :title, DESCRIPTION = :description, IMAGE_URL = :imageUrl,"
+                        + " ETAG = :etag, LAST_MODIFIED = :lastModified, CHECKED_AT = :checkedAt, FAIL_COUNT = 0, DEAD = FALSE"
+                        + " WHERE LINK_ID = :linkId",
+                new MapSqlParameterSource()
+                        .addValue("title", title)
+                        .addValue("description", description)
+                        .addValue("imageUrl", imageUrl)
+                        .addValue("etag", metadata.getEtag())
+                        .addValue("lastModified", metadata.getLastModified())
+                        .addValue("checkedAt", Timestamp.valueOf(LocalDateTime.now()))
+                        .addValue("linkId", link.linkId()));
+
+        // Новые авто-теги, которых у ссылки еще нет
+        Set<String> tags = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT t.NAME FROM LINK_TAGS lt JOIN TAGS t ON t.TAG_ID = lt.TAG_ID WHERE lt.LINK_ID = :linkId",
+                new MapSqlParameterSource("linkId", link.linkId()), String.class));
+        Set<String> newTags = new HashSet<>();
+        for (String tag : metadata.getTags()) {
+            if (tag.length() <= MAX_TAG_LENGTH && tags.add(tag)) {
+                newTags.add(tag);
+            }
+        }
+        tagDictionary.insertLinkTags(Map.of(link.linkId(), newTags));
+    }
+
+    private void markAlive(LinkRow link, String etag, String lastModified) {
+        jdbcTemplate.update("UPDATE SAVED_LINKS SET ETAG = :etag, LAST_MODIFIED = :lastModified,"
+                        + " CHECKED_AT = :checkedAt, FAIL_COUNT = 0, DEAD = FALSE WHERE LINK_ID = :linkId",
+                new MapSqlParameterSource()
+                        .addValue("etag", etag)
+                        .addValue("lastModified", lastModified)
+                        .addValue("checkedAt", Timestamp.valueOf(LocalDateTime.now()))
+                        .addValue("linkId", link.linkId()));
+        if (link.dead()) {
+            linkSearchBackend.onUpdated(link.userId());
+        }
+    }
+
+    private void markChecked(LinkRow link) {
+        jdbcTemplate.update("UPDATE SAVED_LINKS SET CHECKED_AT = :checkedAt WHERE LINK_ID = :linkId",
+                new MapSqlParameterSource()
+                        .addValue("checkedAt", Timestamp.valueOf(LocalDateTime.now()))
+                        .addValue("linkId", link.linkId()));
+    }
+
+    /**
+     * Неудачная проверка: gone - страница удалена (404/410), иначе ссылка неработающая после dead-after ошибок
+     * (5xx или сетевая ошибка)
+     */
+    private Result markFailed(LinkRow link, boolean gone) {
+        int failCount = link.failCount() + 1;
+        boolean dead = gone || failCount >= deadAfter;
+        jdbcTemplate.update("UPDATE SAVED_LINKS SET CHECKED_AT = :checkedAt, FAIL_COUNT = :failCount, DEAD = :dead"
+                        + " WHERE LINK_ID = :linkId",
+                new MapSqlParameterSource()
+                        .addValue("checkedAt", Timestamp.valueOf(LocalDateTime.now()))
+                        .addValue("failCount", failCount)
+                        .addValue("dead", dead)
+                        .addValue("linkId", link.linkId()));
+        if (dead && !link.dead()) {
+            log.debug("Ссылка не работает: {}", link.url());
+            // Отметка выводится в /find
+            linkSearchBackend.onUpdated(link.userId());
+        }
+        return dead ? Result.DEAD : Result.FAILED;
+    }
+
+    /**
+     * Новое значение, если оно не пустое и отличается от сохраненного, иначе null
+     */
+    private static String changed(String saved, String value) {
+        return value == null || value.isBlank() || value.equals(saved) ? null : value;
+    }
+
+    private static String truncate(String text) {
+        return text == null || text.length() <= MAX_TEXT_LENGTH ? text : text.substring(0, MAX_TEXT_LENGTH);
+    }
+}
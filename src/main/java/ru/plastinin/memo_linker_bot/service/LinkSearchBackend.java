@@ -0,0 +1,41 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import ru.plastinin.memo_linker_bot.dto.SearchQuery;
+import ru.plastinin.memo_linker_bot.dto.SearchResult;
+import ru.plastinin.memo_linker_bot.module.SavedLink;
+import ru.plastinin.memo_linker_bot.module.User;
+
+import java.util.UUID;
+
+/**
+ * Реализация поиска ссылок для команды /find
+ * Выбирается настройкой bot.search.backend: index, postgres, h2 или like
+ */
+public interface LinkSearchBackend {
+
+    /**
+     * Поиск ссылок пользователя
+     *
+     * @param user  User
+     * @param query SearchQuery
+     * @param limit сколько ссылок вернуть
+     * @return SearchResult
+     */
+    SearchResult search(User user, SearchQuery query, int limit);
+
+    /**
+     * Уведомление о сохранении новой ссылки
+     *
+     * @param savedLink SavedLink
+     */
+    default void onSaved(SavedLink savedLink) {
+    }
+
+    /**
+     * Уведомление об изменении заголовка, описания, тегов или отметки DEAD ссылок пользователя
+     *
+     * @param userId UUID пользователя
+     */
+    default void onUpdated(UUID userId) {
+    }
+}
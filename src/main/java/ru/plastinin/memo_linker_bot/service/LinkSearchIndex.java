@@ -0,0 +1,111 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.plastinin.memo_linker_bot.dto.LinkIndexRow;
+import ru.plastinin.memo_linker_bot.dto.LinkTag;
+import ru.plastinin.memo_linker_bot.dto.LinkView;
+import ru.plastinin.memo_linker_bot.dto.SearchQuery;
+import ru.plastinin.memo_linker_bot.dto.SearchResult;
+import ru.plastinin.memo_linker_bot.module.SavedLink;
+import ru.plastinin.memo_linker_bot.module.User;
+import ru.plastinin.memo_linker_bot.repository.SavedLinkRepository;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Поиск ссылок по инвертированному индексу в памяти
+ * Индекс пользователя загружается из базы одним запросом при первом поиске
+ * и дополняется при сохранении новых ссылок, поэтому поиск к базе не обращается.
+ * Размер кэша ограничен суммарным весом индексов (ссылки и пары слово-ссылка, см. UserLinkIndex.weight),
+ * а не числом пользователей: индекс пользователя с сотней тысяч ссылок весит как тысяча небольших.
+ * Индексы давно не искавших пользователей вытесняются.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "bot.search.backend", havingValue = "index", matchIfMissing = true)
+@Slf4j
+public class LinkSearchIndex implements LinkSearchBackend {
+
+    private final SavedLinkRepository savedLinkRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Cache<UUID, UserLinkIndex> indexes;
+
+    public LinkSearchIndex(SavedLinkRepository savedLinkRepository,
+                           PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry,
+                           @Value("${bot.search.index.max-weight:3000000}") long maxWeight,
+                           @Value("${bot.search.index.idle-timeout:PT30M}") Duration idleTimeout) {
+        this.savedLinkRepository = savedLinkRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.indexes = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                // Вес пересчитывается и при дополнении индекса через asMap().computeIfPresent
+                .weigher((UUID userId, UserLinkIndex index) -> index.weight())
+                .expireAfterAccess(idleTimeout)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, indexes, "linkSearchIndex");
+    }
+
+    @Override
+    public SearchResult search(User user, SearchQuery query, int limit) {
+        List<LinkView> links = indexes.get(user.getUserId(), userId -> load(user)).search(query);
+        return new SearchResult(links.size(), List.copyOf(links.subList(0, Math.min(limit, links.size()))));
+    }
+
+    /**
+     * Добавить сохраненную ссылку в индекс пользователя, если он уже загружен
+     *
+     * @param savedLink SavedLink
+     */
+    @Override
+    public void onSaved(SavedLink savedLink) {
+        // computeIfPresent дождется загрузки индекса, если она идет прямо сейчас
+        indexes.asMap().computeIfPresent(savedLink.getUser().getUserId(), (userId, index) -> {
+            index.add(LinkView.from(savedLink));
+            return index;
+        });
+    }
+
+    /**
+     * Ссылки пользователя изменились: индекс загрузится заново при следующем поиске
+     *
+     * @param userId UUID пользователя
+     */
+    @Override
+    public void onUpdated(UUID userId) {
+        indexes.invalidate(userId);
+    }
+
+    private UserLinkIndex load(User user) {
+        UserLinkIndex index = new UserLinkIndex();
+        // Теги и ссылки двумя запросами: строки тегов сразу из словаря, без коллекции SavedLink.tags,
+        // ссылки читаются курсором и сразу попадают в индекс, без сущностей SavedLink
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<UUID, Set<String>> tags = new HashMap<>();
+            for (LinkTag linkTag : savedLinkRepository.findTagsByUser(user)) {
+                tags.computeIfAbsent(linkTag.getLinkId(), key -> new HashSet<>()).add(linkTag.getTag());
+            }
+            try (Stream<LinkIndexRow> rows = savedLinkRepository.streamIndexRows(user)) {
+                rows.forEach(row -> index.add(LinkView.from(row, tags.getOrDefault(row.getLinkId(), Set.of()))));
+            }
+        });
+        log.debug("Загружен поисковый индекс пользователя {}: вес {}", user.getUserId(), index.weight());
+        return index;
+    }
+}
@@ -0,0 +1,243 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.plastinin.memo_linker_bot.module.SavedLink;
+import ru.plastinin.memo_linker_bot.module.UuidV7;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отложенная пакетная запись ссылок /save (bot.save.write-behind.enabled)
+ * Ссылки всех чатов копятся в очереди и записываются одной транзакцией пачками до max-batch ссылок,
+ * собранными не дольше max-delay: одна проверка дубликатов, одна многострочная вставка в SAVED_LINKS
+ * и одна пакетная вставка в LINK_TAGS на пачку вместо нескольких обращений к базе на каждую ссылку.
+ * Результат ссылки завершается после фиксации транзакции, поэтому пользователь получает подтверждение
+ * только для записанной ссылки. Если пачка нарушила ограничение (ту же ссылку одновременно записал импорт),
+ * ссылки пачки записываются по одной. При остановке приложения ссылки, принятые до нее, записываются.
+ */
+@Service
+@Slf4j
+public class LinkWriteBuffer {
+
+    /**
+     * Ссылка, ожидающая записи, и ее результат: false - такая ссылка у пользователя уже есть
+     */
+    private record Pending(SavedLink link, CompletableFuture<Boolean> result) {
+    }
+
+    // Метка остановки в очереди: ссылки перед ней записываются, после нее ссылки не принимаются
+    private static final Pending STOP = new Pending(null, null);
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TagDictionary tagDictionary;
+
+    private final boolean enabled;
+    private final int maxBatch;
+    private final Duration maxDelay;
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private boolean running = true;
+
+    private final DistributionSummary batchSize;
+
+    public LinkWriteBuffer(NamedParameterJdbcTemplate jdbcTemplate,
+                           TransactionTemplate transactionTemplate,
+                           TagDictionary tagDictionary,
+                           MeterRegistry meterRegistry,
+                           @Value("${bot.save.write-behind.enabled:false}") boolean enabled,
+                           @Value("${bot.save.write-behind.max-batch:100}") int maxBatch,
+                           @Value("${bot.save.write-behind.max-delay:PT0.02S}") Duration maxDelay) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.tagDictionary = tagDictionary;
+        this.enabled = enabled;
+        this.maxBatch = maxBatch;
+        this.maxDelay = maxDelay;
+
+        Gauge.builder("memo.save.write-behind.queue", queue, Collection::size)
+                .description("Ссылки, ожидающие пакетной записи")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("memo.save.write-behind.batch")
+                .description("Ссылок в одной пакетной записи")
+                .register(meterRegistry);
+        this.writer = enabled ? Thread.ofPlatform().name("link-write-behind").daemon().start(this::work) : null;
+    }
+
+    /**
+     * Включена ли пакетная запись
+     *
+     * @return boolean
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Поставить ссылку в очередь на запись
+     * Ссылке без идентификатора назначается UuidV7
+     *
+     * @param link SavedLink с пользователем, хешем ссылки и временем создания
+     * @return true после фиксации записи, false - у пользователя уже есть ссылка с тем же URL_HASH
+     */
+    public CompletableFuture<Boolean> write(SavedLink link) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        if (link.getLinkId() == null) {
+            link.setLinkId(UuidV7.generate());
+        }
+        synchronized (this) {
+            if (!enabled || !running) {
+                result.completeExceptionally(new IllegalStateException("Пакетная запись ссылок остановлена"));
+                return result;
+            }
+            queue.add(new Pending(link, result));
+        }
+        return result;
+    }
+
+    private void work() {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        try {
+            boolean stopping = false;
+            while (!stopping) {
+                Pending first = queue.take();
+                if (first == STOP) {
+                    break;
+                }
+                // Пачка собирается не дольше max-delay с момента первой ссылки
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelay.toNanos();
+                while (batch.size() < maxBatch) {
+                    Pending next = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    if (next == STOP) {
+                        stopping = true;
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // Ссылки, которые не успели записать
+            IllegalStateException stopped = new IllegalStateException("Пакетная запись ссылок прервана");
+            batch.addAll(queue);
+            batch.stream()
+                    .filter(pending -> pending != STOP)
+                    .forEach(pending -> pending.result().completeExceptionally(stopped));
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        batchSize.record(batch.size());
+        try {
+            List<Boolean> written = transactionTemplate.execute(status -> insert(batch));
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result().complete(written.get(i));
+            }
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Пачка ссылок нарушила уникальность, запись по одной: {}", e.getMessage());
+            batch.forEach(this::flushOne);
+        } catch (Exception e) {
+            log.error("Ошибка пакетной записи ссылок: {}", e.getMessage());
+            batch.forEach(pending -> pending.result().completeExceptionally(e));
+        }
+    }
+
+    private void flushOne(Pending pending) {
+        try {
+            pending.result().complete(transactionTemplate.execute(status -> insert(List.of(pending))).getFirst());
+        } catch (DataIntegrityViolationException e) {
+            // Дубликат - только нарушение уникального индекса (USER_ID, URL_HASH), остальное - ошибка записи
+            if (SavedLinkConstraints.isDuplicateLink(e)) {
+                pending.result().complete(false);
+            } else {
+                pending.result().completeExceptionally(e);
+            }
+        } catch (Exception e) {
+            pending.result().completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Записать пачку ссылок с тегами
+     *
+     * @return для каждой ссылки пачки: записана ли она (false - дубликат)
+     */
+    private List<Boolean> insert(List<Pending> batch) {
+        // Хеши, уже занятые теми же пользователями, и повторы внутри пачки
+        // (условие по USER_ID, чтобы запрос шел по индексу (USER_ID, URL_HASH))
+        Set<String> taken = new HashSet<>();
+        Set<UUID> users = new HashSet<>();
+        Set<String> hashes = new HashSet<>();
+        batch.forEach(pending -> {
+            users.add(pending.link().getUser().getUserId());
+            hashes.add(pending.link().getUrlHash());
+        });
+        jdbcTemplate.query("SELECT USER_ID, URL_HASH FROM SAVED_LINKS WHERE USER_ID IN (:users) AND URL_HASH IN (:hashes)",
+                new MapSqlParameterSource()
+                        .addValue("users", users)
+                        .addValue("hashes", hashes),
+                rs -> {
+                    taken.add(rs.getObject("USER_ID") + ":" + rs.getString("URL_HASH"));
+                });
+
+        List<Boolean> written = new ArrayList<>(batch.size());
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        Map<UUID, Set<String>> linkTags = new LinkedHashMap<>();
+        for (Pending pending : batch) {
+            SavedLink link = pending.link();
+            boolean added = taken.add(link.getUser().getUserId() + ":" + link.getUrlHash());
+            written.add(added);
+            if (added) {
+                rows.add(new Object[]{link.getLinkId(), link.getUser().getUserId(), link.getOriginUrl(),
+                        link.getUrlHash(), link.getTitle(), link.getDescription(), link.getImageUrl(),
+                        link.getEtag(), link.getLastModified(), Timestamp.valueOf(link.getCreatedAt())});
+                linkTags.put(link.getLinkId(), link.getTags());
+            }
+        }
+        if (!rows.isEmpty()) {
+            // Список массивов раскрывается в VALUES (...), (...): одна вставка на всю пачку
+            jdbcTemplate.update("INSERT INTO SAVED_LINKS (LINK_ID, USER_ID, ORIGIN_URL, URL_HASH, TITLE, DESCRIPTION,"
+                            + " IMAGE_URL, ETAG, LAST_MODIFIED, CREATED_AT) VALUES :rows",
+                    new MapSqlParameterSource("rows", rows));
+            tagDictionary.insertLinkTags(linkTags);
+        }
+        return written;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            queue.add(STOP);
+        }
+        if (writer != null) {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+}
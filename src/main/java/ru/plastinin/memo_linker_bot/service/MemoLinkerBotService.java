@@ -2,23 +2,28 @@ package ru.plastinin.memo_linker_bot.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.Connection;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
 import org.springframework.context.MessageSource;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import ru.plastinin.memo_linker_bot.configuration.StopWordsConfig;
 import ru.plastinin.memo_linker_bot.constants.MessageConstants;
+import ru.plastinin.memo_linker_bot.dto.ExportFile;
+import ru.plastinin.memo_linker_bot.dto.LinkListItem;
+import ru.plastinin.memo_linker_bot.dto.LinkView;
+import ru.plastinin.memo_linker_bot.dto.ListPage;
+import ru.plastinin.memo_linker_bot.dto.PageMetadata;
+import ru.plastinin.memo_linker_bot.dto.SearchQuery;
+import ru.plastinin.memo_linker_bot.dto.SearchResult;
+import ru.plastinin.memo_linker_bot.dto.TagCount;
 import ru.plastinin.memo_linker_bot.exception.ServiceException;
 import ru.plastinin.memo_linker_bot.module.SavedLink;
-import ru.plastinin.memo_linker_bot.module.SavedLinkTag;
 import ru.plastinin.memo_linker_bot.module.User;
 import ru.plastinin.memo_linker_bot.repository.SavedLinkRepository;
 import ru.plastinin.memo_linker_bot.repository.SavedLinkTagRepository;
 import ru.plastinin.memo_linker_bot.repository.UserRepository;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 
@@ -29,18 +34,36 @@ import java.util.*;
 public class MemoLinkerBotService {
 
     private final UserRepository userRepository;
+    private final UserCache userCache;
     private final SavedLinkRepository savedLinkRepository;
     private final SavedLinkTagRepository savedLinkTagRepository;
 
     private final DateTimeFormatter customFormatter = DateTimeFormatter.ofPattern("dd MMMM yyyy HH:mm:ss");
 
-    // Стоп-слова (русские и английские) используем для создания авто-тегов
-    private final StopWordsConfig stopWordsConfig;
+    // Общий кэш данных страниц (заголовок, описание, картинка, авто-теги)
+    private final PageMetadataCache pageMetadataCache;
+
+    // Каноническая форма ссылок для поиска дубликатов
+    private final UrlCanonicalizer urlCanonicalizer;
+
+    // Поиск ссылок для команды /find (bot.search.backend)
+    private final LinkSearchBackend linkSearchBackend;
+
+    // Импорт закладок из файла (/import)
+    private final BookmarkImportService bookmarkImportService;
+
+    // Выгрузка ссылок в файл (/export)
+    private final LinkExportService linkExportService;
+
+    // Пакетная запись ссылок /save
+    private final LinkWriteBuffer linkWriteBuffer;
 
     private final MessageSource messageSource;
 
     final int MAX_MESSAGE_LENGTH = 4000; // Telegram limit
     final int MAX_LINKS_IN_MESSAGE = 10;
+    final int LIST_PAGE_SIZE = 10;
+    final int MAX_TAGS_IN_CLOUD = 200; // больше тегов в сообщение все равно не поместится
 
     /**
      * Обработчик команды /start
@@ -52,14 +75,15 @@ public class MemoLinkerBotService {
     public String startCommandHandler(Long chatId, String userName) {
         User user;
         //Ищем в базе пользователя, если нет, то добавляем нового
-        user = userRepository.getUserByChatId(chatId)
+        user = userCache.findByChatId(chatId)
                 .orElseGet(() -> {
                     User newUser = User.builder()
                             .chatId(chatId)
                             .username(userName)
                             .createdAd(LocalDateTime.now())
                             .build();
-                    userRepository.save(newUser);
+                    newUser = userRepository.save(newUser);
+                    userCache.put(newUser);
                     return newUser;
                 });
         String text = MessageConstants.WELCOME_MESSAGE;
@@ -69,12 +93,13 @@ public class MemoLinkerBotService {
 
     /**
      * Обработчик команды /save
+     * Метод не транзакционный: страница загружается без удержания соединения с базой,
+     * каждое обращение к репозиторию выполняется в своей короткой транзакции
      *
      * @param chatId  chatId
      * @param message String[]
      * @return String
      */
-    @Transactional
     public String saveCommandHandler(Long chatId, String[] message) {
         try {
             //Проверим, что кроме команды /save есть еще что-то
@@ -85,14 +110,17 @@ public class MemoLinkerBotService {
             // Найдем пользователя
             User user = getUser(chatId);
 
-            // Проверим, не сохранялась ли данная ссылка ранее
-            Optional<SavedLink> link = savedLinkRepository.findByOriginUrlAndUser(message[1], user);
+            // Проверим, не сохранялась ли данная ссылка ранее: поиск по хешу канонической ссылки
+            String urlHash = UrlCanonicalizer.hash(urlCanonicalizer.canonicalize(message[1]));
+            Optional<SavedLink> link = savedLinkRepository.findByUserAndUrlHash(user, urlHash);
             if (link.isPresent()) {
-                String textErr = MessageConstants.MESSAGE_ERROR_DATA_DUPLICATION;
-                return String.format(textErr, link.get().getCreatedAt().format(customFormatter));
+                return duplicateMessage(link.get());
             }
 
+            // Страница загружается и ссылка сохраняется в том виде, в каком ее прислал пользователь:
+            // каноническая форма нужна только для хеша
             SavedLink savedLink = parseUrl(message[1]);
+            savedLink.setUrlHash(urlHash);
             savedLink.setUser(user);
             savedLink.setCreatedAt(LocalDateTime.now());
 
@@ -122,13 +150,27 @@ public class MemoLinkerBotService {
                         title.append(" ");
                     }
                     savedLink.setTitle(title.toString().replace("\"", ""));
-                    savedLinkRepository.save(savedLink);
                 } else {
                     return MessageConstants.MESSAGE_ERROR_SAVE;
                 }
-            } else {
-                savedLinkRepository.save(savedLink);
             }
+            boolean stored;
+            try {
+                stored = store(savedLink);
+            } catch (DataIntegrityViolationException e) {
+                if (!SavedLinkConstraints.isDuplicateLink(e)) {
+                    throw e;
+                }
+                stored = false;
+            }
+            if (!stored) {
+                // Ту же ссылку одновременно сохранили другой командой или импортом
+                log.info("Повторное сохранение ссылки: {}", savedLink.getOriginUrl());
+                return savedLinkRepository.findByUserAndUrlHash(user, urlHash)
+                        .map(this::duplicateMessage)
+                        .orElse(MessageConstants.MESSAGE_ERROR_SAVE);
+            }
+            linkSearchBackend.onSaved(savedLink);
             //Ссылку удалось сохранить. Осталось сообщить об этом
             String text = MessageConstants.MESSAGE_OK_SAVE;
             // Описание ссылки
@@ -149,40 +191,142 @@ public class MemoLinkerBotService {
     }
 
     /**
-     * Обработчик команды /list
+     * Ответ на повторное сохранение: дата, когда ссылка уже была сохранена
      *
+     * @param savedLink сохраненная ранее ссылка
      * @return String
      */
-    public String listCommandHandler(Long chatId) {
+    private String duplicateMessage(SavedLink savedLink) {
+        return String.format(MessageConstants.MESSAGE_ERROR_DATA_DUPLICATION,
+                savedLink.getCreatedAt().format(customFormatter));
+    }
+
+    /**
+     * Запись новой ссылки: сразу через репозиторий или пачкой с другими (bot.save.write-behind.enabled)
+     * В обоих случаях метод возвращается после фиксации записи
+     *
+     * @param savedLink SavedLink
+     * @return false, если такая ссылка у пользователя уже есть
+     */
+    private boolean store(SavedLink savedLink) {
+        if (linkWriteBuffer.isEnabled()) {
+            return linkWriteBuffer.write(savedLink).join();
+        }
+        savedLinkRepository.save(savedLink);
+        return true;
+    }
+
+    /**
+     * Обработчик команды /list
+     * Первая страница списка: самые новые ссылки
+     *
+     * @return ListPage
+     */
+    public ListPage listCommandHandler(Long chatId) {
         // Найдем пользователя
         User user = getUser(chatId);
 
-        // Отсортированный по дате добавления список ссылок пользователя
-        List<SavedLink> collections = savedLinkRepository.findAllByUserOrderByCreatedAtLimit(user, 50);
+        // Берем на одну ссылку больше, чтобы узнать, есть ли следующая страница
+        List<LinkListItem> items = savedLinkRepository.findListPage(user, LIST_PAGE_SIZE + 1);
+        if (items.isEmpty()) {
+            return new ListPage(MessageConstants.EMPTY_BASE, null, null); // в базе еще нет данных
+        }
+        return buildListPage(items, false);
+    }
 
-        if (collections.isEmpty()) {
-            return MessageConstants.EMPTY_BASE; // в базе еще нет данных
+    /**
+     * Переход по страницам списка ссылок
+     * Страницы выбираются по ключу (createdAt, linkId), поэтому время ответа не зависит от номера страницы
+     *
+     * @param chatId Long
+     * @param older  true - к более старым ссылкам, false - к более новым
+     * @param cursor курсор из ListPage
+     * @return ListPage
+     */
+    public ListPage listPageHandler(Long chatId, boolean older, String cursor) {
+        User user = getUser(chatId);
+        LocalDateTime createdAt;
+        UUID linkId;
+        try {
+            int separator = cursor.indexOf('_');
+            createdAt = decodeCursorTime(cursor.substring(0, separator));
+            linkId = UUID.fromString(cursor.substring(separator + 1));
+        } catch (RuntimeException e) {
+            log.warn("Некорректный курсор списка ссылок: {}", cursor);
+            return listCommandHandler(chatId);
+        }
+
+        List<LinkListItem> items;
+        if (older) {
+            items = savedLinkRepository.findListPageOlderThan(user, createdAt, linkId, LIST_PAGE_SIZE + 1);
+            if (items.isEmpty()) {
+                return listCommandHandler(chatId);
+            }
+            return buildListPage(items, true);
+        }
+
+        items = new ArrayList<>(savedLinkRepository.findListPageNewerThan(user, createdAt, linkId, LIST_PAGE_SIZE + 1));
+        if (items.size() <= LIST_PAGE_SIZE) {
+            return listCommandHandler(chatId); // Дошли до самых новых ссылок
         }
+        items.removeLast();
+        Collections.reverse(items);
+        ListPage page = buildListPage(items, true);
+        // На более старые ссылки переход есть всегда: с них мы пришли
+        return new ListPage(page.getText(), page.getPrevCursor(),
+                page.getNextCursor() != null ? page.getNextCursor() : encodeCursor(items.getLast()));
+    }
+
+    /**
+     * Составим страницу списка ссылок в одно сообщение
+     *
+     * @param items    ссылки от новых к старым, возможно на одну больше размера страницы
+     * @param hasNewer есть ли более новые ссылки
+     * @return ListPage
+     */
+    private ListPage buildListPage(List<LinkListItem> items, boolean hasNewer) {
+        List<LinkListItem> page = items.size() > LIST_PAGE_SIZE ? items.subList(0, LIST_PAGE_SIZE) : items;
 
-        //Составим список ссылок в одно сообщение
         StringBuilder messageText = new StringBuilder("🔎 Вот список ваших ссылок:\n\n");
-        for (SavedLink savedLink : collections) {
+        int rendered = 0;
+        for (LinkListItem savedLink : page) {
             messageText.append("🏷️ ")
                     .append("<a href=\"")
                     .append(savedLink.getOriginUrl())
                     .append("\">")
                     .append(savedLink.getTitle())
                     .append("</a>")
+                    .append(savedLink.isDead() ? MessageConstants.DEAD_LINK_MARK : "")
                     .append("\n");
+            rendered++;
 
             // ПРОВЕРКА ДЛИНЫ
             if (messageText.length() > MAX_MESSAGE_LENGTH - 200) {
-                messageText.append("\n\n... (сообщение обрезано)");
                 break;
             }
-
         }
-        return messageText.toString();
+        // Ссылки, не поместившиеся в сообщение, попадут на следующую страницу:
+        // курсор указывает на последнюю выведенную ссылку
+        boolean hasOlder = items.size() > rendered;
+        return new ListPage(messageText.toString(),
+                hasNewer ? encodeCursor(page.getFirst()) : null,
+                hasOlder ? encodeCursor(items.get(rendered - 1)) : null);
+    }
+
+    /**
+     * Курсор страницы: время добавления в микросекундах (base36) и идентификатор ссылки
+     * Укладывается в 64 байта callback_data вместе с префиксом команды
+     */
+    private String encodeCursor(LinkListItem item) {
+        LocalDateTime createdAt = item.getCreatedAt();
+        long micros = createdAt.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + createdAt.getNano() / 1_000;
+        return Long.toString(micros, 36) + "_" + item.getLinkId();
+    }
+
+    private LocalDateTime decodeCursorTime(String value) {
+        long micros = Long.parseLong(value, 36);
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
     }
 
     /**
@@ -193,32 +337,22 @@ public class MemoLinkerBotService {
      */
     public String tagsListCommandHandler(Long chatId) {
         User user = getUser(chatId);
-        // Запишем теги в карту вместе с их количеством
-        Map<String, Integer> tagFrequency = new HashMap<>();
-        for (SavedLinkTag savedLinkTag : savedLinkTagRepository.findAllTags(user)) {
-            tagFrequency.put(savedLinkTag.getTag(), tagFrequency.getOrDefault(savedLinkTag.getTag(), 0) + 1);
-        }
+        // Теги вместе с их количеством, отсортированные по частоте использования (от большего к меньшему)
+        List<TagCount> sortedTags = savedLinkTagRepository.findTopTagCounts(user, MAX_TAGS_IN_CLOUD);
 
-        if (tagFrequency.isEmpty()) {
+        if (sortedTags.isEmpty()) {
             return MessageConstants.EMPTY_BASE; // в базе еще нет данных
         }
 
-        // Сортируем теги по частоте использования (от большего к меньшему)
-        List<Map.Entry<String, Integer>> sortedTags = new ArrayList<>(tagFrequency.entrySet());
-        sortedTags.sort((a, b) -> b.getValue().compareTo(a.getValue()));
-
-        // Находим максимальное количество для нормализации
-        int maxCount = sortedTags.stream()
-                .mapToInt(Map.Entry::getValue)
-                .max()
-                .orElse(1);
+        // Максимальное количество для нормализации - у первого тега
+        long maxCount = sortedTags.getFirst().getCount();
 
         StringBuilder messageText = new StringBuilder();
         messageText.append("<b>☁️ 🏷️ Облако тегов:</b>\n\n");
 
-        for (Map.Entry<String, Integer> entry : sortedTags) {
-            String tag = entry.getKey();
-            int count = entry.getValue();
+        for (TagCount entry : sortedTags) {
+            String tag = entry.getTag();
+            long count = entry.getCount();
 
             // Определяем размер тега на основе частоты
             String formattedTag = formatTagByFrequency(tag, count, maxCount);
@@ -236,7 +370,10 @@ public class MemoLinkerBotService {
             }
         }
 
-        messageText.append("\n\n<i>Всего тегов: ").append(sortedTags.size()).append("</i>");
+        long totalTags = sortedTags.size() < MAX_TAGS_IN_CLOUD
+                ? sortedTags.size()
+                : savedLinkTagRepository.countDistinctTags(user);
+        messageText.append("\n\n<i>Всего тегов: ").append(totalTags).append("</i>");
 
         return messageText.toString();
 
@@ -248,7 +385,6 @@ public class MemoLinkerBotService {
      * @param chatId Long
      * @return результат поиска
      */
-    @Transactional
     public String findCommandHandler(Long chatId, String[] message) {
         try {
             //Проверим, что кроме команды /find есть еще что-то
@@ -257,37 +393,17 @@ public class MemoLinkerBotService {
             }
             //Найдем пользователя
             User user = getUser(chatId);
-            //Соберем ключевые слова в поисковую строку, а теги в List
-            StringBuilder findText = new StringBuilder(); // поиск по заголовку и описанию
-            List<String> findTeg = new ArrayList<>(); // поиск по тегам
-            for (int i = 1; i < message.length; i++) {
-                if (message[i].startsWith("#")) {
-                    findTeg.add(message[i].replace("#", ""));
-                } else {
-                    findText.append("%").append(message[i].toLowerCase()).append("%");
-                }
-            }
-
-            // Поиск по описанию
-            Set<SavedLink> links = new LinkedHashSet<>(savedLinkRepository.findSavedLink(user, findText.toString()));
-            // Поиск по тегам
-            links.addAll(savedLinkRepository.findAllByUserAndTagsIn(user, findTeg));
+            // Поиск по заголовку, описанию и тегам
+            SearchResult result = linkSearchBackend.search(user, parseSearchQuery(message), MAX_LINKS_IN_MESSAGE);
 
             // Если данные не найдены, то сообщим об этом
-            if (links.isEmpty()) {
+            if (result.getTotal() == 0) {
                 return MessageConstants.MESSAGE_NO_DATA_FOUND;
             }
-            int qnt = links.size();
-            int linkCount = 0;
+            long qnt = result.getTotal();
             //Составим список ссылок в одно сообщение
             StringBuilder messageText = new StringBuilder("🔎 Вот ссылки, которые найдены по вашему запросу (" + qnt + "):\n\n");
-            for (SavedLink savedLink : links) {
-                if (linkCount++ >= MAX_LINKS_IN_MESSAGE) {
-                    messageText.append("\n\n... и ещё ")
-                            .append(links.size() - MAX_LINKS_IN_MESSAGE)
-                            .append(" ссылок");
-                    break;
-                }
+            for (LinkView savedLink : result.getLinks()) {
                 // Добавим к сообщению теги
                 StringBuilder tags = new StringBuilder();
                 for (String tag : savedLink.getTags()) {
@@ -300,6 +416,7 @@ public class MemoLinkerBotService {
                         .append("\">")
                         .append(savedLink.getTitle())
                         .append("</a>")
+                        .append(savedLink.isDead() ? MessageConstants.DEAD_LINK_MARK : "")
                         .append("\n")
                         .append(savedLink.getDescription())
                         .append("\n")
@@ -309,9 +426,14 @@ public class MemoLinkerBotService {
                 // ПРОВЕРКА ДЛИНЫ
                 if (messageText.length() > MAX_MESSAGE_LENGTH - 200) {
                     messageText.append("\n\n... (сообщение обрезано)");
-                    break;
+                    return messageText.toString();
                 }
             }
+            if (qnt > MAX_LINKS_IN_MESSAGE) {
+                messageText.append("\n\n... и ещё ")
+                        .append(qnt - MAX_LINKS_IN_MESSAGE)
+                        .append(" ссылок");
+            }
             return messageText.toString();
         } catch (Exception e) {
             log.error("Ошибка поиска ссылок: {}", e.getMessage());
@@ -320,113 +442,106 @@ public class MemoLinkerBotService {
     }
 
     /**
-     * Парсинг страницы
+     * Обработчик команды /import
+     * Запускает импорт закладок из присланного файла, ход импорта показывается в сообщении messageId
      *
-     * @param url ссылка
-     * @return SavedLink
+     * @param chatId    Long
+     * @param fileId    идентификатор файла в телеграмме
+     * @param fileName  имя файла
+     * @param messageId сообщение для хода импорта
+     * @param feedback  ImportFeedback
+     * @return текст ошибки или null, если импорт запущен
      */
-    private SavedLink parseUrl(String url) {
-        SavedLink savedLink;
+    public String importCommandHandler(Long chatId, String fileId, String fileName, Integer messageId,
+                                       ImportFeedback feedback) {
         try {
-            Connection connection = Jsoup.connect(url)
-                    .userAgent("Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36")
-                    .timeout(30000)                    // Таймаут подключения: 30 секунд
-                    .maxBodySize(2 * 1024 * 1024)      // Макс. размер страницы: 2 МБ
-                    .ignoreContentType(true)           // Игнорируем Content-Type
-                    .ignoreHttpErrors(true);           // Не падать на HTTP ошибках
-
-
-            Document doc = connection
-                    .execute()   // Выполняем запрос
-                    .parse();    // Парсим документ из Response
-
-            // Найдем заголовок, описание и ссылку картинки на странице
-            savedLink = SavedLink
-                    .builder()
-                    .originUrl(url)
-                    .title(doc.title())
-                    .description(doc.select("meta[name=description]").attr("content"))
-                    .imageUrl(doc.select("meta[property=og:image]").attr("content"))
-                    .build();
-
-            // Возьмем топ-10 слов, которые встречаются на странице и сделаем из них хештеги для быстрого поиска
-            String text = doc.text().toLowerCase();
-            Set<String> tags = collectTags(text);
-            // Если коллекция тегов не пустая, то сохраняем ее
-            if (!tags.isEmpty()) {
-                savedLink.setTags(tags);
+            User user = getUser(chatId);
+            if (!bookmarkImportService.start(user, chatId, fileId, fileName, messageId, feedback)) {
+                return MessageConstants.MESSAGE_IMPORT_ALREADY_RUNNING;
             }
-            return savedLink;
+            return null;
         } catch (Exception e) {
-            log.error("Error parsing url: {}", e.getMessage());
-            return SavedLink.builder().originUrl(url).build();
+            log.error("Ошибка запуска импорта: {}", e.getMessage());
+            return MessageConstants.MESSAGE_IMPORT_HELP;
         }
     }
 
     /**
-     * Метод находит топ 10 слов на странице
-     * и добавляет их в хештеги для быстрого поиска
+     * Обработчик команды /export [json|html]
+     * Файл формируется по мере отправки, поток содержимого нужно закрыть
      *
-     * @param text текст страницы
-     * @return Set коллекция хештегов
+     * @param chatId  Long
+     * @param message String[]
+     * @return ExportFile
+     * @throws ServiceException если пользователь не найден или выгрузку не удалось начать
      */
-    private Set<String> collectTags(String text) {
-        Set<String> tags = new HashSet<>();
-
-        if (text == null || text.isEmpty()) {
-            return tags;
-        }
-
-        // Если текст слишком большой - берём только начало
-        // Большие статьи обычно имеют основной контент в начале
-        final int MAX_TEXT_LENGTH = 100000; // 100K символов достаточно
-        if (text.length() > MAX_TEXT_LENGTH) {
-            text = text.substring(0, MAX_TEXT_LENGTH);
-            log.debug("Текст страницы сокращён до {} символов", MAX_TEXT_LENGTH);
-        }
-
-        // 2. ПОТОКОВАЯ ОБРАБОТКА СО SCANNER
-        Map<String, Integer> wordFrequency = new HashMap<>();
-        final Set<String> stopWords = stopWordsConfig.getStopWords();
-        final int MAX_UNIQUE_WORDS = 500; // Не будем хранить все уникальные слова
-
-        try (Scanner scanner = new Scanner(text)) {
-            // Разделитель: всё, что не является буквой, апострофом или дефисом
-            scanner.useDelimiter("[^\\p{L}\\p{M}'-]+");
-
-            while (scanner.hasNext() && wordFrequency.size() < MAX_UNIQUE_WORDS) {
-                String word = scanner.next().toLowerCase();
-
-                // Проверка условий: длина и не стоп-слово
-                if (word.length() >= 3 && !stopWords.contains(word)) {
-                    wordFrequency.put(word, wordFrequency.getOrDefault(word, 0) + 1);
-                }
-            }
+    public ExportFile exportCommandHandler(Long chatId, String[] message) {
+        User user = getUser(chatId);
+        LinkExportService.Format format = message.length > 1 && message[1].equalsIgnoreCase("html")
+                ? LinkExportService.Format.HTML
+                : LinkExportService.Format.JSON;
+        try {
+            return linkExportService.export(user, format);
+        } catch (IOException e) {
+            throw new ServiceException("Не удалось начать выгрузку", e);
         }
+    }
 
-        // 3. ВЫБОР ТОП-10 СЛОВ
-        // Используем PriorityQueue для эффективного поиска топ-N
-        if (!wordFrequency.isEmpty()) {
-            // Минимальная куча для хранения топ-10
-            PriorityQueue<Map.Entry<String, Integer>> topWords =
-                    new PriorityQueue<>(Map.Entry.comparingByValue());
-
-            for (Map.Entry<String, Integer> entry : wordFrequency.entrySet()) {
-                topWords.offer(entry);
-                if (topWords.size() > 10) {
-                    topWords.poll(); // Удаляем элемент с наименьшей частотой
-                }
+    /**
+     * Разбор поискового запроса: ключевые слова, теги (#тег)
+     * и необязательный оператор ИЛИ (OR, |) между словами
+     *
+     * @param message String[]
+     * @return SearchQuery
+     */
+    private SearchQuery parseSearchQuery(String[] message) {
+        List<String> findWords = new ArrayList<>(); // поиск по заголовку и описанию
+        List<String> findTeg = new ArrayList<>(); // поиск по тегам
+        boolean anyWord = false;
+        for (int i = 1; i < message.length; i++) {
+            String word = message[i];
+            if (word.isBlank()) {
+                continue;
             }
-
-            // Переносим результаты в Set
-            while (!topWords.isEmpty()) {
-                tags.add(topWords.poll().getKey());
+            if (word.startsWith("#")) {
+                findTeg.add(word.replace("#", ""));
+            } else if (word.equalsIgnoreCase("or") || word.equalsIgnoreCase("или") || word.equals("|")) {
+                anyWord = true;
+            } else {
+                findWords.add(word.toLowerCase());
             }
         }
+        return SearchQuery.builder()
+                .words(findWords)
+                .tags(findTeg)
+                .anyWord(anyWord)
+                .build();
+    }
 
-        log.debug("Сгенерировано {} тегов из {} уникальных слов",
-                tags.size(), wordFrequency.size());
-        return tags;
+    /**
+     * Парсинг страницы
+     * Данные страницы берутся из общего кэша, при промахе страница загружается
+     *
+     * @param url ссылка
+     * @return SavedLink
+     */
+    private SavedLink parseUrl(String url) {
+        try {
+            PageMetadata page = pageMetadataCache.get(url);
+            return SavedLink
+                    .builder()
+                    .originUrl(url)
+                    .title(page.getTitle())
+                    .description(page.getDescription())
+                    .imageUrl(page.getImageUrl())
+                    .etag(page.getEtag())
+                    .lastModified(page.getLastModified())
+                    .tags(new HashSet<>(page.getTags()))
+                    .build();
+        } catch (Exception e) {
+            log.error("Error parsing url: {}", e.getMessage());
+            return SavedLink.builder().originUrl(url).build();
+        }
     }
 
 
@@ -437,7 +552,7 @@ public class MemoLinkerBotService {
      * @return user
      */
     private User getUser(Long chatId) {
-        return userRepository.getUserByChatId(chatId)
+        return userCache.findByChatId(chatId)
                 .orElseThrow(() -> new ServiceException("Пользователь не найден в системе"));
     }
 
@@ -449,7 +564,7 @@ public class MemoLinkerBotService {
      * @param maxCount максимальное количество
      * @return String формат тега: большой жирный шрифт, жирный шрифт, обычный шрифт, курсив
      */
-    private String formatTagByFrequency(String tag, int count, int maxCount) {
+    private String formatTagByFrequency(String tag, long count, long maxCount) {
         double percentage = (double) count / maxCount;
 
         if (percentage >= 0.7) {
@@ -0,0 +1,327 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Загрузка страниц общим HTTP-клиентом (бин OkHttpClient)
+ * Соединения переиспользуются из пула, по HTTPS согласуется HTTP/2, ответ сжимается gzip или brotli.
+ * С одного хоста одновременно загружается не больше bot.http.max-per-host страниц,
+ * тело страницы читается не дальше bot.http.max-body-size.
+ * Таймаут загрузки и отключение недоступных хостов - по статистике HostHealthRegistry.
+ */
+@Service
+@Slf4j
+public class PageFetcher {
+
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36";
+    private static final String ACCEPT = "text/html,application/xhtml+xml;q=0.9,*/*;q=0.8";
+
+    // Кодировка из <meta charset> ищется в начале страницы, если ее нет в Content-Type
+    private static final int CHARSET_SNIFF_SIZE = 1024;
+    private static final Pattern META_CHARSET = Pattern.compile("(?i)<meta[^>]+charset\\s*=\\s*[\"']?([\\w.:-]+)");
+
+    private final OkHttpClient okHttpClient;
+    private final HostHealthRegistry hostHealth;
+
+    private final long maxBodySize;
+    private final int maxPerHost;
+    private final Duration hostWait;
+
+    // Ограничение одновременных загрузок с одного хоста
+    private final Cache<String, Semaphore> hostPermits = Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofMinutes(10))
+            .build();
+
+    public PageFetcher(OkHttpClient okHttpClient,
+                       HostHealthRegistry hostHealth,
+                       @Value("${bot.http.max-body-size:2MB}") DataSize maxBodySize,
+                       @Value("${bot.http.max-per-host:4}") int maxPerHost,
+                       @Value("${bot.http.call-timeout:PT60S}") Duration hostWait) {
+        this.okHttpClient = okHttpClient;
+        this.hostHealth = hostHealth;
+        this.maxBodySize = maxBodySize.toBytes();
+        this.maxPerHost = maxPerHost;
+        this.hostWait = hostWait;
+    }
+
+    /**
+     * Запрос страницы: заголовки ответа получены, тело читается из Page.reader()
+     * Место в ограничении хоста занято, пока страница не закрыта
+     *
+     * @param url ссылка
+     * @return Page, закрывается вызывающим
+     * @throws HostUnavailableException если загрузка с хоста отключена после ошибок
+     * @throws IOException              если страницу не удалось запросить
+     * @throws IllegalArgumentException если ссылка некорректна
+     */
+    public Page fetch(String url) throws IOException {
+        return fetch(url, null, null);
+    }
+
+    /**
+     * Условный запрос страницы: если она не изменилась с прошлой загрузки, сайт ответит 304 без тела
+     *
+     * @param url          ссылка
+     * @param etag         ETag прошлой загрузки или null
+     * @param lastModified Last-Modified прошлой загрузки или null
+     * @return Page, закрывается вызывающим
+     * @throws IOException если страницу не удалось запросить
+     */
+    public Page fetch(String url, String etag, String lastModified) throws IOException {
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        if (httpUrl == null) {
+            throw new IllegalArgumentException("Некорректная ссылка: " + url);
+        }
+        String host = httpUrl.host();
+        Semaphore permit = hostPermits.get(host, key -> new Semaphore(maxPerHost));
+        try {
+            if (!permit.tryAcquire(hostWait.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new InterruptedIOException("Превышено время ожидания загрузки с " + host);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Загрузка прервана");
+        }
+        // После разрешения загрузка обязательно отмечается в статистике хоста (успех или ошибка)
+        if (!hostHealth.allow(host)) {
+            permit.release();
+            throw new HostUnavailableException(host);
+        }
+        long start = System.nanoTime();
+        try {
+            Request.Builder request = new Request.Builder()
+                    .url(httpUrl)
+                    .header("User-Agent", USER_AGENT)
+                    .header("Accept", ACCEPT);
+            if (etag != null) {
+                request.header("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                request.header("If-Modified-Since", lastModified);
+            }
+            Call call = okHttpClient.newCall(request.build());
+            // Таймаут всего запроса вместе с чтением тела: медленный хост не держит загрузку дольше обычного
+            call.timeout().timeout(hostHealth.timeout(host).toMillis(), TimeUnit.MILLISECONDS);
+            Response response = call.execute();
+            return new Page(response, permit, maxBodySize, host, System.nanoTime() - start);
+        } catch (IOException | RuntimeException e) {
+            hostHealth.failure(host, e.getClass().getSimpleName());
+            permit.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Загрузка с хоста отключена: страница не запрашивается
+     */
+    public static final class HostUnavailableException extends IOException {
+        public HostUnavailableException(String host) {
+            super("Загрузка страниц с " + host + " временно отключена");
+        }
+    }
+
+    /**
+     * Загруженная страница
+     */
+    public final class Page implements Closeable {
+
+        private final Response response;
+        private final Semaphore permit;
+        private final long maxBodySize;
+        private final String host;
+        // Время загрузки для статистики хоста: до заголовков и внутри чтения тела, без разбора страницы
+        private long networkNanos;
+        private boolean closed;
+        private IOException readError;
+
+        private Page(Response response, Semaphore permit, long maxBodySize, String host, long headersNanos) {
+            this.response = response;
+            this.permit = permit;
+            this.maxBodySize = maxBodySize;
+            this.host = host;
+            this.networkNanos = headersNanos;
+        }
+
+        public int status() {
+            return response.code();
+        }
+
+        /**
+         * Заголовок ответа или null
+         */
+        public String header(String name) {
+            return response.header(name);
+        }
+
+        /**
+         * Адрес страницы после переходов по редиректам
+         */
+        public String url() {
+            return response.request().url().toString();
+        }
+
+        /**
+         * Тело страницы в кодировке из Content-Type, из meta charset или UTF-8
+         * Чтение заканчивается на ограничении размера, как будто страница закончилась
+         *
+         * @return Reader
+         */
+        public Reader reader() throws IOException {
+            ResponseBody body = response.body();
+            if (body == null) {
+                return Reader.nullReader();
+            }
+            Charset charset;
+            long start = System.nanoTime();
+            try {
+                charset = charset(body.contentType(), body.source());
+            } catch (IOException e) {
+                readError = e;
+                throw e;
+            } finally {
+                networkNanos += System.nanoTime() - start;
+            }
+            return new InputStreamReader(new LimitedInputStream(body.byteStream(), maxBodySize, this), charset);
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (readError != null) {
+                hostHealth.failure(host, readError.getClass().getSimpleName());
+            } else if (response.code() >= 500) {
+                hostHealth.failure(host, "HTTP " + response.code());
+            } else {
+                hostHealth.success(host, Duration.ofNanos(networkNanos));
+            }
+            try {
+                response.close();
+            } finally {
+                permit.release();
+            }
+        }
+
+        private static Charset charset(MediaType contentType, BufferedSource source) throws IOException {
+            Charset charset = contentType == null ? null : contentType.charset();
+            if (charset != null) {
+                return charset;
+            }
+            // Просматриваем начало страницы, не забирая его из потока
+            byte[] head;
+            try (InputStream peek = source.peek().inputStream()) {
+                head = peek.readNBytes(CHARSET_SNIFF_SIZE);
+            }
+            Matcher matcher = META_CHARSET.matcher(new String(head, StandardCharsets.ISO_8859_1));
+            if (matcher.find()) {
+                try {
+                    return Charset.forName(matcher.group(1));
+                } catch (IllegalArgumentException e) {
+                    log.debug("Неизвестная кодировка страницы: {}", matcher.group(1));
+                }
+            }
+            return StandardCharsets.UTF_8;
+        }
+    }
+
+    /**
+     * Поток, который заканчивается после limit байт
+     * Время чтения и ошибка чтения (например, таймаут) запоминаются в странице для статистики хоста
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private final Page page;
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit, Page page) {
+            super(in);
+            this.remaining = limit;
+            this.page = page;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b;
+            long start = System.nanoTime();
+            try {
+                b = super.read();
+            } catch (IOException e) {
+                page.readError = e;
+                throw e;
+            } finally {
+                page.networkNanos += System.nanoTime() - start;
+            }
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                log.debug("Страница обрезана по ограничению размера");
+                return -1;
+            }
+            int read;
+            long start = System.nanoTime();
+            try {
+                read = super.read(buffer, offset, (int) Math.min(length, remaining));
+            } catch (IOException e) {
+                page.readError = e;
+                throw e;
+            } finally {
+                page.networkNanos += System.nanoTime() - start;
+            }
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.plastinin.memo_linker_bot.dto.PageMetadata;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Общий для всех пользователей кэш данных страниц
+ * Ключ - каноническая форма ссылки (UrlCanonicalizer.normalize).
+ * Записи ограничены по количеству и устаревают по времени.
+ * Одновременные запросы одной и той же ссылки ждут одну общую загрузку.
+ * Неудачные загрузки в кэше не остаются.
+ */
+@Service
+@Slf4j
+public class PageMetadataCache {
+
+    private final PageParserService pageParserService;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AsyncCache<String, PageMetadata> cache;
+
+    public PageMetadataCache(PageParserService pageParserService,
+                             MeterRegistry meterRegistry,
+                             @Value("${bot.page-cache.max-size:10000}") long maxSize,
+                             @Value("${bot.page-cache.ttl:PT6H}") Duration ttl) {
+        this.pageParserService = pageParserService;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .executor(executor)
+                .recordStats()
+                .buildAsync();
+        // Счетчики попаданий, промахов и вытеснений: cache.gets, cache.evictions и т.д.
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), "pageMetadata");
+    }
+
+    /**
+     * Данные страницы из кэша или с сайта
+     *
+     * @param url ссылка
+     * @return PageMetadata
+     * @throws ru.plastinin.memo_linker_bot.exception.ServiceException если страницу не удалось загрузить
+     */
+    public PageMetadata get(String url) {
+        CompletableFuture<PageMetadata> future = cache.get(UrlCanonicalizer.normalize(url),
+                (key, cacheExecutor) -> CompletableFuture.supplyAsync(() -> pageParserService.parse(url), cacheExecutor));
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
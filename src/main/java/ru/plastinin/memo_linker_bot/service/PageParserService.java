@@ -0,0 +1,228 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+import org.springframework.stereotype.Service;
+import ru.plastinin.memo_linker_bot.configuration.StopWordsConfig;
+import ru.plastinin.memo_linker_bot.dto.PageMetadata;
+import ru.plastinin.memo_linker_bot.exception.ServiceException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Загрузка страницы и извлечение из нее заголовка, описания, картинки и авто-тегов
+ * Время фаз пишется в метрики: memo.page.fetch (подключение и заголовки ответа),
+ * memo.page.parse (чтение и разбор тела), memo.page.tags (выбор авто-тегов).
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class PageParserService {
+
+    static final int MAX_VALIDATOR_LENGTH = 256;
+
+    // Стоп-слова (русские и английские) используем для создания авто-тегов
+    private final StopWordsConfig stopWordsConfig;
+
+    private final MeterRegistry meterRegistry;
+
+    // Загрузка страниц общим HTTP-клиентом
+    private final PageFetcher pageFetcher;
+
+    /**
+     * Парсинг страницы
+     * Страница разбирается потоково: элементы обрабатываются по мере чтения и сразу удаляются
+     * из дерева, заголовок, описание и картинка берутся из head, текст сразу уходит в счетчик слов.
+     * Чтение прекращается, как только текста достаточно для авто-тегов.
+     *
+     * @param url ссылка
+     * @return PageMetadata
+     * @throws ServiceException если страницу не удалось загрузить
+     */
+    public PageMetadata parse(String url) {
+        PageFetcher.Page page;
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String status = "none";
+        String exception = "none";
+        try {
+            // Запрос через общий пул соединений, тело пока не читаем; HTTP-ошибки не прерывают разбор
+            page = pageFetcher.fetch(url);
+            status = page.status() / 100 + "xx";
+        } catch (IOException | UncheckedIOException | IllegalArgumentException e) {
+            exception = e.getClass().getSimpleName();
+            throw new ServiceException("Не удалось загрузить страницу " + url, e);
+        } finally {
+            sample.stop(Timer.builder("memo.page.fetch")
+                    .description("Подключение к сайту и получение заголовков ответа")
+                    .tag("status", status)
+                    .tag("exception", exception)
+                    .register(meterRegistry));
+        }
+
+        return read(page);
+    }
+
+    /**
+     * Чтение и разбор уже запрошенной страницы, страница закрывается
+     *
+     * @param page PageFetcher.Page
+     * @return PageMetadata вместе с ETag и Last-Modified ответа
+     * @throws ServiceException если страницу не удалось прочитать
+     */
+    PageMetadata read(PageFetcher.Page page) {
+        try (page; StreamParser streamer = new StreamParser(Parser.htmlParser()).parse(page.reader(), page.url())) {
+            return extract(streamer).toBuilder()
+                    .etag(validator(page.header("ETag")))
+                    .lastModified(validator(page.header("Last-Modified")))
+                    .build();
+        } catch (IOException | UncheckedIOException e) {
+            throw new ServiceException("Не удалось загрузить страницу " + page.url(), e);
+        }
+    }
+
+    // Слишком длинные ETag и Last-Modified не сохраняем: колонки ограничены 256 символами
+    private static String validator(String header) {
+        return header == null || header.length() > MAX_VALIDATOR_LENGTH ? null : header;
+    }
+
+    /**
+     * Разбор страницы из потокового парсера: заголовок, описание, картинка и авто-теги
+     *
+     * @param streamer StreamParser с телом страницы
+     * @return PageMetadata
+     */
+    PageMetadata extract(StreamParser streamer) {
+        String title = null;
+        String description = null;
+        String imageUrl = null;
+        WordFrequencyCounter counter = new WordFrequencyCounter(stopWordsConfig.getStopWords());
+        PageText text = new PageText(counter);
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String exception = "none";
+        try {
+            Iterator<Element> elements = streamer.stream().iterator();
+            while (elements.hasNext()) {
+                Element element = elements.next();
+                // Найдем заголовок, описание и ссылку картинки на странице
+                switch (element.normalName()) {
+                    case "title" -> {
+                        if (title == null) {
+                            title = element.text();
+                        }
+                    }
+                    case "meta" -> {
+                        if (description == null && "description".equalsIgnoreCase(element.attr("name"))) {
+                            description = element.attr("content");
+                        } else if (imageUrl == null && "og:image".equalsIgnoreCase(element.attr("property"))) {
+                            imageUrl = element.attr("content");
+                        }
+                    }
+                    default -> {
+                    }
+                }
+                // Дочерние элементы уже обработаны и удалены, остался только собственный текст
+                text.append(element);
+                if (counter.isFull()) {
+                    log.debug("Текст страницы сокращён до {} символов", WordFrequencyCounter.MAX_TEXT_LENGTH);
+                    break;
+                }
+                element.remove();
+            }
+        } catch (RuntimeException e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder("memo.page.parse")
+                    .description("Чтение и разбор страницы")
+                    .tag("exception", exception)
+                    .register(meterRegistry));
+        }
+
+        // Возьмем топ-10 слов, которые встречаются на странице и сделаем из них хештеги для быстрого поиска
+        sample = Timer.start(meterRegistry);
+        Set<String> tags = Set.copyOf(counter.topTags(10));
+        sample.stop(Timer.builder("memo.page.tags")
+                .description("Выбор авто-тегов по частоте слов")
+                .register(meterRegistry));
+
+        return PageMetadata.builder()
+                .title(title == null ? "" : title)
+                .description(description == null ? "" : description)
+                .imageUrl(imageUrl == null ? "" : imageUrl)
+                .tags(tags)
+                .build();
+    }
+
+    /**
+     * Текст страницы для счетчика слов в том же виде, что Element.text()
+     * StreamParser отдает элемент после закрытия, то есть после его дочерних элементов. Текст предков,
+     * стоящий перед элементом, на странице идет раньше: он учитывается первым и удаляется из дерева.
+     * Соседние текстовые узлы продолжают слово (Hel&lt;b&gt;lo&lt;/b&gt;), начало и конец блочного
+     * элемента и &lt;br&gt; слово разделяют. Порядок важен: при равной частоте выигрывает слово,
+     * встреченное раньше, и текст обрезается по длине.
+     */
+    private static final class PageText {
+
+        private final WordFrequencyCounter counter;
+
+        // Блоки, начало которых уже отмечено границей слова
+        private final Set<Node> startedBlocks = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        PageText(WordFrequencyCounter counter) {
+            this.counter = counter;
+        }
+
+        /**
+         * Учесть собственный текст закрытого элемента и текст перед ним
+         */
+        void append(Element element) {
+            appendPrecedingText(element);
+            for (Node child : element.childNodes()) {
+                if (child instanceof TextNode text) {
+                    counter.append(text.getWholeText());
+                }
+            }
+            if (startedBlocks.remove(element)) {
+                counter.endWord();
+            }
+        }
+
+        private void appendPrecedingText(Node node) {
+            Node parent = node.parent();
+            if (parent == null) {
+                return;
+            }
+            appendPrecedingText(parent);
+            // Элементы перед узлом уже обработаны и удалены, остаются текст и комментарии.
+            // Элемент, оставшийся после перестройки дерева парсером, не трогаем: он может быть еще открыт
+            Node sibling = parent.childNode(0);
+            while (sibling != node) {
+                Node next = sibling.nextSibling();
+                if (!(sibling instanceof Element)) {
+                    if (sibling instanceof TextNode text) {
+                        counter.append(text.getWholeText());
+                    }
+                    sibling.remove();
+                }
+                sibling = next;
+            }
+            if (node instanceof Element element && (element.isBlock() || "br".equals(element.normalName()))
+                    && startedBlocks.add(element)) {
+                counter.endWord();
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import ru.plastinin.memo_linker_bot.module.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Полнотекстовый поиск PostgreSQL
+ * Заголовок и описание индексируются в колонке tsvector для русского и английского языков
+ * (заголовок с большим весом), колонка обслуживается GIN-индексом,
+ * результаты сортируются по ts_rank.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "bot.search.backend", havingValue = "postgres")
+@Slf4j
+public class PostgresFullTextSearchBackend extends FullTextSearchBackend {
+
+    private static final String TERM_QUERY = "(to_tsquery('russian', ?) || to_tsquery('english', ?))";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PostgresFullTextSearchBackend(RepositorySearchBackend fallback, JdbcTemplate jdbcTemplate) {
+        super(fallback);
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            jdbcTemplate.execute("""
+                    ALTER TABLE saved_links ADD COLUMN IF NOT EXISTS search_vector tsvector
+                        GENERATED ALWAYS AS (
+                            setweight(to_tsvector('russian', coalesce(title, '')), 'A') ||
+                            setweight(to_tsvector('english', coalesce(title, '')), 'A') ||
+                            setweight(to_tsvector('russian', coalesce(description, '')), 'B') ||
+                            setweight(to_tsvector('english', coalesce(description, '')), 'B')
+                        ) STORED
+                    """);
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS saved_links_search_vector_idx ON saved_links USING GIN (search_vector)");
+            log.info("Полнотекстовый индекс PostgreSQL готов.");
+        } catch (DataAccessException e) {
+            disable(e);
+        }
+    }
+
+    @Override
+    protected List<UUID> findIdsByWords(User user, List<String> terms, boolean anyWord) {
+        List<String> termQueries = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        for (String term : terms) {
+            termQueries.add(TERM_QUERY);
+            // Поиск по началу слова
+            params.add(term + ":*");
+            params.add(term + ":*");
+        }
+        params.add(user.getUserId());
+
+        String sql = """
+                select s.link_id
+                  from saved_links s,
+                       (select %s as q) query
+                 where s.user_id = ?
+                   and s.search_vector @@ query.q
+                 order by ts_rank(s.search_vector, query.q) desc, s.created_at desc
+                """.formatted(String.join(anyWord ? " || " : " && ", termQueries));
+        return jdbcTemplate.queryForList(sql, UUID.class, params.toArray());
+    }
+}
@@ -0,0 +1,158 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.plastinin.memo_linker_bot.dto.LinkTag;
+import ru.plastinin.memo_linker_bot.dto.LinkView;
+import ru.plastinin.memo_linker_bot.dto.SearchQuery;
+import ru.plastinin.memo_linker_bot.dto.SearchResult;
+import ru.plastinin.memo_linker_bot.module.User;
+import ru.plastinin.memo_linker_bot.repository.SavedLinkRepository;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Поиск ссылок запросами like через SavedLinkRepository
+ * Используется при bot.search.backend=like и как запасной вариант для полнотекстового поиска.
+ * Выбираются только выводимые колонки и только выводимые ссылки (limit в запросе),
+ * теги выводимых ссылок загружаются одним запросом: не более трех запросов на команду.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class RepositorySearchBackend implements LinkSearchBackend {
+
+    private static final String LINK_COLUMNS = "s.linkId, s.originUrl, s.title, s.description, s.createdAt, s.dead";
+
+    private final SavedLinkRepository savedLinkRepository;
+
+    private final EntityManager entityManager;
+
+    @Override
+    @Transactional(readOnly = true)
+    public SearchResult search(User user, SearchQuery query, int limit) {
+        Map<String, Object> params = new HashMap<>();
+        List<String> conditions = new ArrayList<>();
+
+        // Поиск по заголовку и описанию
+        if (query.isAnyWord()) {
+            for (String word : query.getWords()) {
+                String param = "word" + params.size();
+                conditions.add("lower(s.description) like :" + param + " or lower(s.title) like :" + param);
+                params.put(param, "%" + word + "%");
+            }
+        } else if (!query.getWords().isEmpty()) {
+            StringBuilder findText = new StringBuilder();
+            for (String word : query.getWords()) {
+                findText.append("%").append(word).append("%");
+            }
+            conditions.add("lower(s.description) like :words or lower(s.title) like :words");
+            params.put("words", findText.toString());
+        }
+        // Поиск по тегам
+        if (!query.getTags().isEmpty()) {
+            conditions.add("exists (select 1 from SavedLinkTag st join st.tag t where st.linkId = s.linkId and t.name in :tags)");
+            params.put("tags", query.getTags());
+        }
+        if (conditions.isEmpty()) {
+            return new SearchResult(0, List.of());
+        }
+
+        String where = " from SavedLink s where s.user = :user and ((" + String.join(") or (", conditions) + "))";
+        params.put("user", user);
+
+        TypedQuery<Object[]> rowsQuery = entityManager.createQuery(
+                "select " + LINK_COLUMNS + where + " order by s.createdAt desc, s.linkId desc", Object[].class);
+        params.forEach(rowsQuery::setParameter);
+        List<Object[]> rows = rowsQuery.setMaxResults(limit).getResultList();
+
+        long total = rows.size();
+        if (rows.size() == limit) {
+            // Ссылок может быть больше, чем выводим - посчитаем их отдельно
+            TypedQuery<Long> countQuery = entityManager.createQuery("select count(s)" + where, Long.class);
+            params.forEach(countQuery::setParameter);
+            total = countQuery.getSingleResult();
+        }
+        return new SearchResult(total, toViews(rows));
+    }
+
+    /**
+     * Ссылки с тегами в заданном порядке
+     *
+     * @param linkIds идентификаторы ссылок
+     * @return List LinkView
+     */
+    @Transactional(readOnly = true)
+    public List<LinkView> findViews(List<UUID> linkIds) {
+        if (linkIds.isEmpty()) {
+            return List.of();
+        }
+        List<Object[]> rows = entityManager.createQuery(
+                        "select " + LINK_COLUMNS + " from SavedLink s where s.linkId in :linkIds", Object[].class)
+                .setParameter("linkIds", linkIds)
+                .getResultList();
+        Map<UUID, LinkView> views = new HashMap<>();
+        for (LinkView view : toViews(rows)) {
+            views.put(view.getLinkId(), view);
+        }
+        List<LinkView> ordered = new ArrayList<>(linkIds.size());
+        for (UUID linkId : linkIds) {
+            LinkView view = views.get(linkId);
+            if (view != null) {
+                ordered.add(view);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Идентификаторы ссылок пользователя с любым из тегов
+     *
+     * @param user User
+     * @param tags теги
+     * @return List UUID
+     */
+    public List<UUID> findIdsByTags(User user, List<String> tags) {
+        if (tags.isEmpty()) {
+            return List.of();
+        }
+        return savedLinkRepository.findLinkIdsByUserAndTagsIn(user, tags);
+    }
+
+    /**
+     * Сборка LinkView из строк запроса, теги всех ссылок загружаются одним запросом
+     */
+    private List<LinkView> toViews(List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+        List<UUID> linkIds = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            linkIds.add((UUID) row[0]);
+        }
+        Map<UUID, Set<String>> tags = new HashMap<>();
+        for (LinkTag linkTag : savedLinkRepository.findTagsByLinkIdIn(linkIds)) {
+            tags.computeIfAbsent(linkTag.getLinkId(), key -> new LinkedHashSet<>()).add(linkTag.getTag());
+        }
+
+        List<LinkView> views = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            UUID linkId = (UUID) row[0];
+            views.add(LinkView.builder()
+                    .linkId(linkId)
+                    .originUrl((String) row[1])
+                    .title((String) row[2])
+                    .description((String) row[3])
+                    .createdAt((LocalDateTime) row[4])
+                    .dead((Boolean) row[5])
+                    .tags(Set.copyOf(tags.getOrDefault(linkId, Set.of())))
+                    .build());
+        }
+        return views;
+    }
+}
@@ -0,0 +1,132 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.plastinin.memo_linker_bot.constants.MessageConstants;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Асинхронный конвейер команды /save
+ * Загрузка, разбор страницы и сбор тегов выполняются на виртуальных потоках,
+ * поэтому медленный сайт не блокирует поток получения обновлений.
+ * Количество одновременных загрузок и длина очереди ограничены настройками.
+ */
+@Service
+@Slf4j
+public class SaveLinkPipeline {
+
+    private final MemoLinkerBotService botService;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Ограничение одновременно выполняемых сохранений
+    private final Semaphore permits;
+    private final int maxConcurrency;
+    // Ограничение числа принятых, но еще не завершенных задач
+    private final int queueCapacity;
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+
+    private final Timer saveLatency;
+    private final Counter rejected;
+
+    public SaveLinkPipeline(MemoLinkerBotService botService,
+                            MeterRegistry meterRegistry,
+                            @Value("${bot.save.max-concurrency:16}") int maxConcurrency,
+                            @Value("${bot.save.queue-capacity:500}") int queueCapacity) {
+        this.botService = botService;
+        this.maxConcurrency = maxConcurrency;
+        this.queueCapacity = queueCapacity;
+        this.permits = new Semaphore(maxConcurrency);
+
+        Gauge.builder("memo.save.queue.depth", () -> pending.get() - active.get())
+                .description("Количество ссылок, ожидающих сохранения")
+                .register(meterRegistry);
+        Gauge.builder("memo.save.active", active, AtomicInteger::get)
+                .description("Количество ссылок, сохраняемых в данный момент")
+                .register(meterRegistry);
+        this.saveLatency = Timer.builder("memo.save.latency")
+                .description("Время от получения команды /save до ответа пользователю")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.rejected = Counter.builder("memo.save.rejected")
+                .description("Команды /save, отклоненные из-за переполнения очереди")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Поставить команду /save в очередь на обработку
+     *
+     * @param chatId     chatId
+     * @param message    String[]
+     * @param onComplete получатель текста ответа, вызывается после сохранения ссылки
+     * @return false, если очередь переполнена и команда не принята
+     */
+    public boolean submit(Long chatId, String[] message, Consumer<String> onComplete) {
+        if (pending.incrementAndGet() > queueCapacity) {
+            pending.decrementAndGet();
+            rejected.increment();
+            log.warn("Очередь сохранения переполнена ({}), команда от chatId {} отклонена.", queueCapacity, chatId);
+            return false;
+        }
+        long start = System.nanoTime();
+        executor.execute(() -> {
+            try {
+                onComplete.accept(save(chatId, message));
+            } catch (Exception e) {
+                log.error("Ошибка отправки результата сохранения: {}", e.getMessage());
+            } finally {
+                pending.decrementAndGet();
+                saveLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Количество принятых, но еще не завершенных команд /save
+     *
+     * @return int
+     */
+    public int inFlight() {
+        return pending.get();
+    }
+
+    private String save(Long chatId, String[] message) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return MessageConstants.MESSAGE_ERROR_SAVE;
+        }
+        active.incrementAndGet();
+        try {
+            return botService.saveCommandHandler(chatId, message);
+        } finally {
+            active.decrementAndGet();
+            permits.release();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Не все задачи сохранения завершены за 30 секунд (максимум одновременно: {}).", maxConcurrency);
+            executor.shutdownNow();
+        }
+    }
+}
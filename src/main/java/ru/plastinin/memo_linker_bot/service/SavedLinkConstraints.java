@@ -0,0 +1,32 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import java.util.Locale;
+
+/**
+ * Ограничения таблицы SAVED_LINKS, нарушение которых означает не ошибку, а повтор ссылки
+ */
+final class SavedLinkConstraints {
+
+    // Уникальный индекс (USER_ID, URL_HASH): у пользователя уже есть ссылка с той же канонической формой
+    static final String URL_HASH_UNIQUE = "SAVED_LINKS_USER_ID_URL_HASH_UQ";
+
+    private SavedLinkConstraints() {
+    }
+
+    /**
+     * Нарушен ли уникальный индекс (USER_ID, URL_HASH)
+     * Имя индекса есть в сообщении и H2, и PostgreSQL (в PostgreSQL в нижнем регистре)
+     *
+     * @param e исключение доступа к данным или его причина
+     * @return boolean
+     */
+    static boolean isDuplicateLink(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            String message = cause.getMessage();
+            if (message != null && message.toUpperCase(Locale.ROOT).contains(URL_HASH_UNIQUE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
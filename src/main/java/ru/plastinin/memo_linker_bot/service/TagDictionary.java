@@ -0,0 +1,145 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.DatabaseMetaData;
+import java.util.*;
+
+/**
+ * Словарь тегов: строка тега и ее целочисленный TAG_ID в таблице TAGS
+ * Ссылки хранят теги парами (LINK_ID, TAG_ID) в LINK_TAGS, строка каждого тега хранится один раз.
+ * Соответствие строк и идентификаторов кэшируется в памяти. Новый тег попадает в кэш строк
+ * только после фиксации транзакции, в которой он создан: откат не оставит в кэше несуществующий TAG_ID.
+ */
+@Service
+@Slf4j
+public class TagDictionary {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    // Вставка тега, если его еще нет: в PostgreSQL ON CONFLICT, в H2 MERGE по NAME
+    private final String insertSql;
+
+    private final Cache<String, Integer> ids;
+    private final Cache<Integer, String> names;
+
+    public TagDictionary(NamedParameterJdbcTemplate jdbcTemplate,
+                         @Value("${bot.tags.cache-size:100000}") long cacheSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.insertSql = isPostgres(jdbcTemplate)
+                ? "INSERT INTO TAGS (NAME) VALUES (:name) ON CONFLICT (NAME) DO NOTHING"
+                : "MERGE INTO TAGS (NAME) KEY (NAME) VALUES (:name)";
+        this.ids = Caffeine.newBuilder().maximumSize(cacheSize).build();
+        this.names = Caffeine.newBuilder().maximumSize(cacheSize).build();
+    }
+
+    /**
+     * Идентификатор тега, тег создается, если его еще нет
+     *
+     * @param name тег
+     * @return TAG_ID
+     */
+    public int intern(String name) {
+        Integer id = ids.getIfPresent(name);
+        if (id != null) {
+            return id;
+        }
+        id = find(name);
+        if (id == null) {
+            MapSqlParameterSource params = new MapSqlParameterSource("name", name);
+            try {
+                jdbcTemplate.update(insertSql, params);
+            } catch (DataIntegrityViolationException e) {
+                // MERGE в H2 не атомарен: тот же тег мог вставить параллельный запрос
+                id = find(name);
+                if (id == null) {
+                    throw e;
+                }
+            }
+            if (id == null) {
+                id = find(name);
+            }
+            if (id == null) {
+                throw new IllegalStateException("Не удалось создать тег " + name);
+            }
+        }
+        names.put(id, name);
+        Integer tagId = id;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    ids.put(name, tagId);
+                }
+            });
+        } else {
+            ids.put(name, tagId);
+        }
+        return tagId;
+    }
+
+    /**
+     * Строка тега по идентификатору
+     *
+     * @param id TAG_ID
+     * @return тег
+     */
+    public String name(int id) {
+        return names.get(id, key -> jdbcTemplate.queryForObject("SELECT NAME FROM TAGS WHERE TAG_ID = :id",
+                new MapSqlParameterSource("id", key), String.class));
+    }
+
+    /**
+     * Пакетная вставка тегов ссылок в LINK_TAGS
+     *
+     * @param linkTags теги по LINK_ID
+     */
+    public void insertLinkTags(Map<UUID, ? extends Collection<String>> linkTags) {
+        List<MapSqlParameterSource> rows = new ArrayList<>();
+        // Новые теги попадают в общий кэш только после фиксации, в пределах пачки запоминаем их здесь
+        Map<String, Integer> batchIds = new HashMap<>();
+        linkTags.forEach((linkId, tags) -> {
+            Set<Integer> tagIds = new HashSet<>();
+            for (String tag : tags) {
+                int tagId = batchIds.computeIfAbsent(tag, this::intern);
+                if (tagIds.add(tagId)) {
+                    rows.add(new MapSqlParameterSource()
+                            .addValue("linkId", linkId)
+                            .addValue("tagId", tagId));
+                }
+            }
+        });
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO LINK_TAGS (LINK_ID, TAG_ID) VALUES (:linkId, :tagId)",
+                    rows.toArray(MapSqlParameterSource[]::new));
+        }
+    }
+
+    private Integer find(String name) {
+        List<Integer> found = jdbcTemplate.queryForList("SELECT TAG_ID FROM TAGS WHERE NAME = :name",
+                new MapSqlParameterSource("name", name), Integer.class);
+        return found.isEmpty() ? null : found.getFirst();
+    }
+
+    private static boolean isPostgres(NamedParameterJdbcTemplate jdbcTemplate) {
+        try {
+            String product = JdbcUtils.extractDatabaseMetaData(jdbcTemplate.getJdbcTemplate().getDataSource(),
+                    DatabaseMetaData::getDatabaseProductName);
+            return "PostgreSQL".equalsIgnoreCase(product);
+        } catch (MetaDataAccessException e) {
+            log.warn("Не удалось определить базу данных: {}", e.getMessage());
+            return false;
+        }
+    }
+}
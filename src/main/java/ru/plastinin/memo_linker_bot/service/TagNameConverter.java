@@ -0,0 +1,28 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Тег ссылки в JPA: в LINK_TAGS хранится TAG_ID, в SavedLink.tags - строка тега
+ * Экземпляр создает Hibernate через контейнер бинов Spring, словарь внедряется в конструктор.
+ * Для поиска по тегам используются запросы с соединением TAGS, а не параметры этого атрибута:
+ * конвертер создает тег, которого еще нет.
+ */
+@Converter
+@RequiredArgsConstructor
+public class TagNameConverter implements AttributeConverter<String, Integer> {
+
+    private final TagDictionary tagDictionary;
+
+    @Override
+    public Integer convertToDatabaseColumn(String tag) {
+        return tag == null ? null : tagDictionary.intern(tag);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Integer tagId) {
+        return tagId == null ? null : tagDictionary.name(tagId);
+    }
+}
@@ -0,0 +1,110 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.plastinin.memo_linker_bot.module.UuidV7;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Перевод ключей пользователей и ссылок, созданных до UuidV7, на UUID версии 7 (bot.ids.migrate=true)
+ * Время в новом ключе берется из CREATED_AT записи, поэтому старые записи встают в индексе по порядку создания.
+ * Внешние ключи LINK_TAGS, SAVED_LINKS и IMPORT_JOBS пересоздаются с ON UPDATE CASCADE,
+ * и новый ключ записывается одним UPDATE первичного ключа. Перенос идет пачками до приема обновлений
+ * (бот в режиме polling регистрируется после него), а повторный запуск пропускает уже переведенные ключи.
+ * Ссылки в кнопках уже отправленных сообщений /list после переноса ведут на первую страницу.
+ */
+@Component
+@Slf4j
+public class TimeOrderedKeyMigration {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+
+    public TimeOrderedKeyMigration(NamedParameterJdbcTemplate jdbcTemplate,
+                                   TransactionTemplate transactionTemplate,
+                                   @Value("${bot.ids.migrate:false}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        cascadeUpdates();
+        int users = migrate("\"USERS\"", "USER_ID");
+        int links = migrate("SAVED_LINKS", "LINK_ID");
+        log.info("Ключи переведены на UUID v7: пользователей {}, ссылок {}.", users, links);
+    }
+
+    private void cascadeUpdates() {
+        foreignKey("LINK_TAGS", "LINK_TAGS_SAVED_LINKS_FK", "LINK_ID", "SAVED_LINKS(LINK_ID)");
+        foreignKey("SAVED_LINKS", "SAVED_LINKS_USERS_FK", "USER_ID", "\"USERS\"(USER_ID)");
+        foreignKey("IMPORT_JOBS", "IMPORT_JOBS_USERS_FK", "USER_ID", "\"USERS\"(USER_ID)");
+    }
+
+    private void foreignKey(String table, String name, String column, String references) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.getJdbcTemplate().execute("ALTER TABLE " + table + " DROP CONSTRAINT IF EXISTS " + name);
+            jdbcTemplate.getJdbcTemplate().execute("ALTER TABLE " + table + " ADD CONSTRAINT " + name
+                    + " FOREIGN KEY (" + column + ") REFERENCES " + references + " ON UPDATE CASCADE");
+        });
+    }
+
+    /**
+     * Перевести ключи таблицы, проходя ее пачками по старому ключу
+     *
+     * @return сколько ключей изменено
+     */
+    int migrate(String table, String idColumn) {
+        UUID lastId = null;
+        int migrated = 0;
+        while (true) {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("lastId", lastId)
+                    .addValue("limit", BATCH_SIZE);
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                    "SELECT " + idColumn + " AS ID, CREATED_AT FROM " + table
+                            + (lastId == null ? "" : " WHERE " + idColumn + " > :lastId")
+                            + " ORDER BY " + idColumn + " LIMIT :limit", params);
+            if (rows.isEmpty()) {
+                return migrated;
+            }
+            List<MapSqlParameterSource> updates = new ArrayList<>();
+            for (Map<String, Object> row : rows) {
+                UUID id = (UUID) row.get("ID");
+                // Уже переведенные ключи и ключи, выданные после перехода на UuidV7
+                if (id.version() == 7) {
+                    continue;
+                }
+                Timestamp createdAt = (Timestamp) row.get("CREATED_AT");
+                updates.add(new MapSqlParameterSource()
+                        .addValue("oldId", id)
+                        .addValue("newId", UuidV7.generate(createdAt == null ? Instant.now() : createdAt.toInstant())));
+            }
+            if (!updates.isEmpty()) {
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+                        "UPDATE " + table + " SET " + idColumn + " = :newId WHERE " + idColumn + " = :oldId",
+                        updates.toArray(MapSqlParameterSource[]::new)));
+            }
+            migrated += updates.size();
+            lastId = (UUID) rows.getLast().get("ID");
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * Каноническая форма ссылки для поиска дубликатов
+ * Схема и хост в нижнем регистре, без порта по умолчанию, фрагмента, меток отслеживания
+ * (utm_*, fbclid, gclid и т.п.) и завершающего слэша. Короткие ссылки известных сервисов
+ * раскрываются запросами HEAD, раскрытые адреса кэшируются.
+ */
+@Service
+@Slf4j
+public class UrlCanonicalizer {
+
+    private static final Set<String> TRACKING_PARAMS = Set.of(
+            "fbclid", "gclid", "dclid", "yclid", "msclkid", "igshid", "mc_cid", "mc_eid", "_openstat");
+
+    private static final Set<String> SHORTENER_HOSTS = Set.of(
+            "bit.ly", "t.co", "goo.gl", "tinyurl.com", "ow.ly", "is.gd", "buff.ly", "cutt.ly",
+            "rebrand.ly", "t.ly", "lnkd.in", "clck.ru", "vk.cc", "youtu.be");
+
+    private static final int MAX_REDIRECTS = 5;
+
+    private final Cache<String, String> resolved;
+
+    // Общий пул соединений, но без перехода по редиректам: Location читаем сами
+    private final OkHttpClient httpClient;
+
+    public UrlCanonicalizer(MeterRegistry meterRegistry,
+                            OkHttpClient okHttpClient,
+                            @Value("${bot.url.resolved-cache.max-size:10000}") long maxSize,
+                            @Value("${bot.url.resolved-cache.ttl:P1D}") Duration ttl,
+                            @Value("${bot.url.resolve-timeout:PT5S}") Duration resolveTimeout) {
+        this.httpClient = okHttpClient.newBuilder()
+                .followRedirects(false)
+                .followSslRedirects(false)
+                .callTimeout(resolveTimeout)
+                .build();
+        this.resolved = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, resolved, "resolvedUrls");
+    }
+
+    /**
+     * Каноническая форма ссылки, короткие ссылки раскрываются
+     *
+     * @param url ссылка
+     * @return String
+     */
+    public String canonicalize(String url) {
+        String normalized = normalize(url);
+        if (!SHORTENER_HOSTS.contains(host(normalized))) {
+            return normalized;
+        }
+        // Неудачное раскрытие не кэшируется (null), ссылка остается короткой
+        String target = resolved.get(normalized, this::resolve);
+        return target == null ? normalized : target;
+    }
+
+    /**
+     * Каноническая форма ссылки без обращения к сети
+     *
+     * @param url ссылка
+     * @return String
+     */
+    public static String normalize(String url) {
+        String trimmed = url.trim();
+        try {
+            URI uri = new URI(trimmed);
+            if (uri.getScheme() == null || uri.getRawAuthority() == null) {
+                return trimmed;
+            }
+            String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+            StringBuilder canonical = new StringBuilder(scheme).append("://");
+            if (uri.getRawUserInfo() != null) {
+                canonical.append(uri.getRawUserInfo()).append('@');
+            }
+            canonical.append(uri.getHost() == null ? uri.getRawAuthority() : uri.getHost().toLowerCase(Locale.ROOT));
+            int port = uri.getPort();
+            if (port != -1 && !(port == 80 && scheme.equals("http")) && !(port == 443 && scheme.equals("https"))) {
+                canonical.append(':').append(port);
+            }
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            while (path.length() > 1 && path.endsWith("/")) {
+                path = path.substring(0, path.length() - 1);
+            }
+            canonical.append(path);
+            if (uri.getRawQuery() != null) {
+                StringJoiner query = new StringJoiner("&");
+                for (String param : uri.getRawQuery().split("&")) {
+                    String name = param.split("=", 2)[0].toLowerCase(Locale.ROOT);
+                    if (!param.isEmpty() && !name.startsWith("utm_") && !TRACKING_PARAMS.contains(name)) {
+                        query.add(param);
+                    }
+                }
+                if (query.length() > 0) {
+                    canonical.append('?').append(query);
+                }
+            }
+            // Фрагмент оставляем только для маршрутов одностраничных приложений (#/..., #!...)
+            String fragment = uri.getRawFragment();
+            if (fragment != null && (fragment.startsWith("/") || fragment.startsWith("!"))) {
+                canonical.append('#').append(fragment);
+            }
+            return canonical.toString();
+        } catch (URISyntaxException e) {
+            return trimmed;
+        }
+    }
+
+    /**
+     * Ссылка известного сервиса коротких ссылок: каноническая форма требует запроса в сеть
+     *
+     * @param url ссылка
+     * @return boolean
+     */
+    static boolean isShortLink(String url) {
+        return SHORTENER_HOSTS.contains(host(normalize(url)));
+    }
+
+    /**
+     * SHA-256 канонической ссылки в шестнадцатеричном виде (64 символа)
+     *
+     * @param canonicalUrl каноническая ссылка
+     * @return String
+     */
+    public static String hash(String canonicalUrl) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonicalUrl.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    /**
+     * Раскрытие короткой ссылки по заголовкам Location
+     *
+     * @return конечная ссылка или null, если раскрыть не удалось
+     */
+    private String resolve(String shortUrl) {
+        String current = shortUrl;
+        try {
+            for (int i = 0; i < MAX_REDIRECTS && SHORTENER_HOSTS.contains(host(current)); i++) {
+                Request request = new Request.Builder().url(current).head().build();
+                String location;
+                try (Response response = httpClient.newCall(request).execute()) {
+                    location = response.code() / 100 == 3 ? response.header("Location") : null;
+                }
+                if (location == null) {
+                    break;
+                }
+                current = normalize(URI.create(current).resolve(location.trim()).toString());
+            }
+            log.debug("Короткая ссылка {} раскрыта в {}", shortUrl, current);
+            return current;
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Не удалось раскрыть короткую ссылку {}: {}", shortUrl, e.getMessage());
+            return null;
+        }
+    }
+
+    private static String host(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? "" : host.toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Заполнение URL_HASH у ссылок, сохраненных до появления колонки
+ * Выполняется при запуске пачками по LINK_ID до приема обновлений (бот в режиме polling регистрируется
+ * после него), поэтому не пересекается с сохранением ссылок. Если у пользователя уже есть ссылка
+ * с тем же хешем (дубликат, сохраненный раньше), дубликат объединяется с ней: теги дубликата
+ * добавляются к ссылке, остается более ранняя дата сохранения, а строка дубликата удаляется.
+ * Короткие ссылки (bit.ly и т.п.) /save хеширует после раскрытия, поэтому при запуске они пропускаются
+ * и раскрываются после него отдельным потоком, не чаще одной в bot.url.backfill-resolve-interval:
+ * бот в это время уже работает, дубликат, сохраненный одновременно, тоже объединяется.
+ */
+@Component
+// Теги дубликатов объединяются в LINK_TAGS: прежние теги должны быть уже перенесены
+@DependsOn("legacyTagMigration")
+@Slf4j
+public class UrlHashBackfill {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final UrlCanonicalizer urlCanonicalizer;
+    private final LinkSearchBackend linkSearchBackend;
+    private final Duration resolveInterval;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            Thread.ofVirtual().name("url-hash-backfill").factory());
+
+    public UrlHashBackfill(NamedParameterJdbcTemplate jdbcTemplate,
+                           TransactionTemplate transactionTemplate,
+                           UrlCanonicalizer urlCanonicalizer,
+                           LinkSearchBackend linkSearchBackend,
+                           @Value("${bot.url.backfill-resolve-interval:PT1S}") Duration resolveInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.urlCanonicalizer = urlCanonicalizer;
+        this.linkSearchBackend = linkSearchBackend;
+        this.resolveInterval = resolveInterval;
+    }
+
+    /**
+     * Ссылка без URL_HASH
+     */
+    private record Row(UUID linkId, UUID userId, String hash, Timestamp createdAt) {
+    }
+
+    @PostConstruct
+    public void start() {
+        try {
+            if (backfill()) {
+                executor.execute(this::resolveShortLinksSafely);
+            }
+        } catch (Exception e) {
+            log.error("Ошибка заполнения URL_HASH: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Заполнить URL_HASH у всех ссылок, где его нет, кроме коротких
+     *
+     * @return true, если остались короткие ссылки без URL_HASH
+     */
+    boolean backfill() {
+        UUID lastLinkId = null;
+        int updated = 0;
+        int merged = 0;
+        int shortLinks = 0;
+        while (true) {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("lastLinkId", lastLinkId)
+                    .addValue("limit", BATCH_SIZE);
+            List<Row> batch = jdbcTemplate.query(
+                    "SELECT LINK_ID, USER_ID, ORIGIN_URL, CREATED_AT FROM SAVED_LINKS WHERE URL_HASH IS NULL"
+                            + (lastLinkId == null ? "" : " AND LINK_ID > :lastLinkId")
+                            + " ORDER BY LINK_ID LIMIT :limit", params,
+                    (rs, rowNum) -> {
+                        String url = rs.getString("ORIGIN_URL");
+                        return new Row(
+                                rs.getObject("LINK_ID", UUID.class),
+                                rs.getObject("USER_ID", UUID.class),
+                                // Короткая ссылка остается без хеша до раскрытия
+                                UrlCanonicalizer.isShortLink(url) ? null : UrlCanonicalizer.hash(UrlCanonicalizer.normalize(url)),
+                                rs.getTimestamp("CREATED_AT"));
+                    });
+            if (batch.isEmpty()) {
+                break;
+            }
+            lastLinkId = batch.getLast().linkId();
+            List<Row> rows = batch.stream().filter(row -> row.hash() != null).toList();
+            shortLinks += batch.size() - rows.size();
+            if (rows.isEmpty()) {
+                continue;
+            }
+
+            // Ссылки тех же пользователей, у которых хеш уже заполнен: ключ USER_ID:URL_HASH
+            Map<String, UUID> taken = new HashMap<>();
+            Set<UUID> users = new HashSet<>();
+            Set<String> hashes = new HashSet<>();
+            rows.forEach(row -> {
+                users.add(row.userId());
+                hashes.add(row.hash());
+            });
+            jdbcTemplate.query("SELECT LINK_ID, USER_ID, URL_HASH FROM SAVED_LINKS"
+                            + " WHERE USER_ID IN (:users) AND URL_HASH IN (:hashes)",
+                    new MapSqlParameterSource()
+                            .addValue("users", users)
+                            .addValue("hashes", hashes),
+                    rs -> {
+                        taken.put(rs.getObject("USER_ID") + ":" + rs.getString("URL_HASH"),
+                                rs.getObject("LINK_ID", UUID.class));
+                    });
+
+            List<MapSqlParameterSource> updates = new ArrayList<>();
+            Map<Row, UUID> duplicates = new LinkedHashMap<>();
+            for (Row row : rows) {
+                UUID keptId = taken.putIfAbsent(row.userId() + ":" + row.hash(), row.linkId());
+                if (keptId == null) {
+                    updates.add(new MapSqlParameterSource()
+                            .addValue("hash", row.hash())
+                            .addValue("linkId", row.linkId()));
+                } else {
+                    duplicates.put(row, keptId);
+                }
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!updates.isEmpty()) {
+                    jdbcTemplate.batchUpdate("UPDATE SAVED_LINKS SET URL_HASH = :hash WHERE LINK_ID = :linkId",
+                            updates.toArray(MapSqlParameterSource[]::new));
+                }
+                duplicates.forEach(this::merge);
+            });
+            updated += updates.size();
+            merged += duplicates.size();
+        }
+        if (updated > 0 || merged > 0) {
+            log.info("URL_HASH заполнен у {} ссылок, объединено дубликатов: {}.", updated, merged);
+        }
+        if (shortLinks > 0) {
+            log.info("Коротких ссылок без URL_HASH: {}, они будут раскрыты в фоне.", shortLinks);
+        }
+        return shortLinks > 0;
+    }
+
+    private void resolveShortLinksSafely() {
+        try {
+            resolveShortLinks();
+        } catch (InterruptedException e) {
+            // Остановка бота: оставшиеся ссылки раскроются после перезапуска
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Ошибка раскрытия коротких ссылок без URL_HASH: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Заполнить URL_HASH у коротких ссылок по раскрытой ссылке, как при /save
+     * Ссылки выбираются заново пачками, поэтому после перезапуска раскрытие продолжается
+     */
+    void resolveShortLinks() throws InterruptedException {
+        UUID lastLinkId = null;
+        int updated = 0;
+        int merged = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("lastLinkId", lastLinkId)
+                    .addValue("limit", BATCH_SIZE);
+            List<Row> rows = new ArrayList<>();
+            List<String> urls = new ArrayList<>();
+            jdbcTemplate.query(
+                    "SELECT LINK_ID, USER_ID, ORIGIN_URL, CREATED_AT FROM SAVED_LINKS WHERE URL_HASH IS NULL"
+                            + (lastLinkId == null ? "" : " AND LINK_ID > :lastLinkId")
+                            + " ORDER BY LINK_ID LIMIT :limit", params,
+                    rs -> {
+                        rows.add(new Row(rs.getObject("LINK_ID", UUID.class), rs.getObject("USER_ID", UUID.class),
+                                null, rs.getTimestamp("CREATED_AT")));
+                        urls.add(rs.getString("ORIGIN_URL"));
+                    });
+            if (rows.isEmpty()) {
+                break;
+            }
+            for (int i = 0; i < rows.size(); i++) {
+                Row row = rows.get(i);
+                String url = urls.get(i);
+                long started = System.nanoTime();
+                Row resolved = new Row(row.linkId(), row.userId(),
+                        UrlCanonicalizer.hash(urlCanonicalizer.canonicalize(url)), row.createdAt());
+                if (store(resolved)) {
+                    updated++;
+                } else {
+                    merged++;
+                    linkSearchBackend.onUpdated(row.userId());
+                }
+                // Раскрытие - запросы к сервисам коротких ссылок: не чаще одного в resolveInterval
+                long pause = resolveInterval.toNanos() - (System.nanoTime() - started);
+                if (pause > 0) {
+                    Thread.sleep(Duration.ofNanos(pause));
+                }
+            }
+            lastLinkId = rows.getLast().linkId();
+        }
+        log.info("Короткие ссылки раскрыты: URL_HASH заполнен у {} ссылок, объединено дубликатов: {}.", updated, merged);
+    }
+
+    /**
+     * Записать хеш ссылки или объединить ее со ссылкой пользователя с тем же хешем
+     * Бот уже принимает /save и /import: если такая ссылка сохранена между проверкой и записью,
+     * запись нарушает уникальный индекс, и ссылка объединяется с сохраненной
+     *
+     * @return true, если хеш записан, false - если ссылка объединена с дубликатом
+     */
+    private boolean store(Row row) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                Boolean stored = transactionTemplate.execute(status -> {
+                    MapSqlParameterSource params = new MapSqlParameterSource()
+                            .addValue("userId", row.userId())
+                            .addValue("hash", row.hash())
+                            .addValue("linkId", row.linkId());
+                    List<UUID> kept = jdbcTemplate.queryForList("SELECT LINK_ID FROM SAVED_LINKS"
+                            + " WHERE USER_ID = :userId AND URL_HASH = :hash", params, UUID.class);
+                    if (kept.isEmpty()) {
+                        jdbcTemplate.update("UPDATE SAVED_LINKS SET URL_HASH = :hash WHERE LINK_ID = :linkId", params);
+                        return true;
+                    }
+                    merge(row, kept.getFirst());
+                    return false;
+                });
+                return Boolean.TRUE.equals(stored);
+            } catch (DataIntegrityViolationException e) {
+                if (attempt > 0 || !SavedLinkConstraints.isDuplicateLink(e)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Объединить дубликат со ссылкой, которая остается
+     */
+    private void merge(Row duplicate, UUID keptId) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("duplicateId", duplicate.linkId())
+                .addValue("keptId", keptId)
+                .addValue("createdAt", duplicate.createdAt());
+        jdbcTemplate.update("INSERT INTO LINK_TAGS (LINK_ID, TAG_ID)"
+                + " SELECT :keptId, TAG_ID FROM LINK_TAGS WHERE LINK_ID = :duplicateId"
+                + " AND TAG_ID NOT IN (SELECT TAG_ID FROM LINK_TAGS WHERE LINK_ID = :keptId)", params);
+        jdbcTemplate.update("DELETE FROM LINK_TAGS WHERE LINK_ID = :duplicateId", params);
+        if (duplicate.createdAt() != null) {
+            jdbcTemplate.update("UPDATE SAVED_LINKS SET CREATED_AT = :createdAt"
+                    + " WHERE LINK_ID = :keptId AND CREATED_AT > :createdAt", params);
+        }
+        jdbcTemplate.update("DELETE FROM SAVED_LINKS WHERE LINK_ID = :duplicateId", params);
+        log.debug("Дубликат {} объединен со ссылкой {}", duplicate.linkId(), keptId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,60 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.plastinin.memo_linker_bot.module.User;
+import ru.plastinin.memo_linker_bot.repository.UserRepository;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Кэш пользователей по chatId перед UserRepository
+ * Заполняется при /start и при первом обращении, потокобезопасен,
+ * записи неактивных пользователей вытесняются.
+ * Каждое попадание (cache.gets{cache=users,result=hit}) - сэкономленный запрос к базе.
+ */
+@Service
+public class UserCache {
+
+    private final UserRepository userRepository;
+
+    private final Cache<Long, User> users;
+
+    public UserCache(UserRepository userRepository,
+                     MeterRegistry meterRegistry,
+                     @Value("${bot.user-cache.max-size:10000}") long maxSize,
+                     @Value("${bot.user-cache.idle-timeout:PT1H}") Duration idleTimeout) {
+        this.userRepository = userRepository;
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(idleTimeout)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, users, "users");
+    }
+
+    /**
+     * Поиск пользователя по chatId: сначала в кэше, затем в базе
+     * Отсутствие пользователя не кэшируется, чтобы /start сразу стал виден
+     *
+     * @param chatId Long
+     * @return Optional User
+     */
+    public Optional<User> findByChatId(Long chatId) {
+        return Optional.ofNullable(users.get(chatId, id -> userRepository.getUserByChatId(id).orElse(null)));
+    }
+
+    /**
+     * Положить пользователя в кэш (после регистрации)
+     *
+     * @param user User
+     */
+    public void put(User user) {
+        users.put(user.getChatId(), user);
+    }
+}
@@ -0,0 +1,143 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import ru.plastinin.memo_linker_bot.dto.LinkView;
+import ru.plastinin.memo_linker_bot.dto.SearchQuery;
+
+import java.util.*;
+
+/**
+ * Инвертированный индекс ссылок одного пользователя
+ * Слова заголовка, описания и тегов указывают на ссылки с весом поля,
+ * ключевое слово запроса совпадает со всеми словами индекса, которые с него начинаются.
+ */
+class UserLinkIndex {
+
+    private static final int TITLE_WEIGHT = 3;
+    private static final int TAG_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    private final Map<UUID, LinkView> links = new HashMap<>();
+    // Порядок добавления ссылок: при равной релевантности новые ссылки выше
+    private final Map<UUID, Integer> sequence = new HashMap<>();
+    // Слово -> (ссылка -> вес)
+    private final NavigableMap<String, Map<UUID, Integer>> terms = new TreeMap<>();
+    // Тег в нижнем регистре -> ссылки
+    private final Map<String, Set<UUID>> tags = new HashMap<>();
+    // Пары слово-ссылка и тег-ссылка: вместе с числом ссылок определяют размер индекса в памяти
+    private int postings;
+
+    /**
+     * Добавить ссылку в индекс (повторное добавление той же ссылки игнорируется)
+     *
+     * @param link LinkView
+     */
+    synchronized void add(LinkView link) {
+        if (links.putIfAbsent(link.getLinkId(), link) != null) {
+            return;
+        }
+        sequence.put(link.getLinkId(), sequence.size());
+        addTerms(link.getLinkId(), link.getTitle(), TITLE_WEIGHT);
+        addTerms(link.getLinkId(), link.getDescription(), DESCRIPTION_WEIGHT);
+        for (String tag : link.getTags()) {
+            if (tags.computeIfAbsent(tag.toLowerCase(), key -> new HashSet<>()).add(link.getLinkId())) {
+                postings++;
+            }
+            addTerms(link.getLinkId(), tag, TAG_WEIGHT);
+        }
+    }
+
+    /**
+     * Вес индекса для ограничения кэша индексов: ссылки и пары слово-ссылка
+     *
+     * @return int
+     */
+    synchronized int weight() {
+        return links.size() + postings;
+    }
+
+    /**
+     * Поиск ссылок
+     *
+     * @param query SearchQuery
+     * @return найденные ссылки, самые релевантные первыми
+     */
+    synchronized List<LinkView> search(SearchQuery query) {
+        Map<UUID, Double> scores = new HashMap<>();
+
+        // Поиск по ключевым словам
+        List<String> words = new ArrayList<>();
+        for (String word : query.getWords()) {
+            words.addAll(tokenize(word));
+        }
+        if (!words.isEmpty()) {
+            Map<UUID, Integer> matchedWords = new HashMap<>();
+            for (String word : words) {
+                Map<UUID, Integer> postings = postings(word);
+                double idf = Math.log(1.0 + (double) links.size() / Math.max(1, postings.size()));
+                postings.forEach((linkId, weight) -> {
+                    scores.merge(linkId, idf * weight, Double::sum);
+                    matchedWords.merge(linkId, 1, Integer::sum);
+                });
+            }
+            if (!query.isAnyWord()) {
+                // Нужны все слова запроса
+                scores.keySet().removeIf(linkId -> matchedWords.get(linkId) < words.size());
+            }
+        }
+
+        // Поиск по тегам
+        for (String tag : query.getTags()) {
+            for (UUID linkId : tags.getOrDefault(tag.toLowerCase(), Set.of())) {
+                scores.merge(linkId, (double) TAG_WEIGHT, Double::sum);
+            }
+        }
+
+        List<UUID> found = new ArrayList<>(scores.keySet());
+        found.sort(Comparator.comparing((UUID linkId) -> scores.get(linkId)).reversed()
+                .thenComparing(linkId -> sequence.get(linkId), Comparator.reverseOrder()));
+        List<LinkView> result = new ArrayList<>(found.size());
+        for (UUID linkId : found) {
+            result.add(links.get(linkId));
+        }
+        return result;
+    }
+
+    /**
+     * Ссылки со словами, которые начинаются с заданного, и их суммарный вес
+     */
+    private Map<UUID, Integer> postings(String prefix) {
+        Map<UUID, Integer> postings = new HashMap<>();
+        for (Map<UUID, Integer> term : terms.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values()) {
+            term.forEach((linkId, weight) -> postings.merge(linkId, weight, Math::max));
+        }
+        return postings;
+    }
+
+    private void addTerms(UUID linkId, String text, int weight) {
+        for (String term : tokenize(text)) {
+            // merge возвращает weight, только если пары слово-ссылка еще не было
+            if (terms.computeIfAbsent(term, key -> new HashMap<>()).merge(linkId, weight, Integer::sum) == weight) {
+                postings++;
+            }
+        }
+    }
+
+    /**
+     * Разбиение текста на слова в нижнем регистре
+     *
+     * @param text текст
+     * @return слова
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return words;
+        }
+        for (String word : text.toLowerCase().split("[^\\p{L}\\p{M}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+}
@@ -0,0 +1,284 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Счетчик частоты слов для авто-тегов
+ * Текст страницы подается частями по мере чтения и разбирается за один проход по символам:
+ * слово - непрерывная последовательность букв, диакритических знаков, апострофов и дефисов.
+ * Частоты хранятся в таблице с открытой адресацией на примитивных массивах,
+ * строка создается только при первой встрече слова.
+ * Большие статьи обычно имеют основной контент в начале, поэтому разбирается не более
+ * MAX_TEXT_LENGTH символов и не более MAX_UNIQUE_WORDS разных слов. Символы считаются, как в
+ * Element.text() jsoup: подряд идущие пробелы - один символ, невидимые символы не считаются.
+ */
+@Slf4j
+class WordFrequencyCounter {
+
+    static final int MAX_TEXT_LENGTH = 100000; // 100K символов достаточно
+    static final int MAX_UNIQUE_WORDS = 500; // Не будем хранить все уникальные слова
+
+    private static final int MIN_WORD_LENGTH = 3;
+    private static final int STOP_WORD = -1;
+    // Символы, которые Element.text() пропускает или заменяет пробелом
+    private static final char SOFT_HYPHEN = '\u00AD';
+    private static final char ZERO_WIDTH_SPACE = '\u200B';
+    private static final char NO_BREAK_SPACE = '\u00A0';
+    // Емкость таблицы - степень двойки с запасом на стоп-слова, встреченные в тексте
+    private static final int TABLE_CAPACITY = 2048;
+    private static final int MAX_TABLE_SIZE = TABLE_CAPACITY * 3 / 4;
+
+    private final Set<String> stopWords;
+
+    // Таблица слов: хеш, слово, частота (STOP_WORD для стоп-слов), порядок первой встречи
+    private final int[] hashes = new int[TABLE_CAPACITY];
+    private final String[] words = new String[TABLE_CAPACITY];
+    private final int[] counts = new int[TABLE_CAPACITY];
+    private final int[] order = new int[TABLE_CAPACITY];
+    private int tableSize;
+    private int uniqueWords;
+
+    // Текущее слово в нижнем регистре
+    private char[] token = new char[64];
+    private int tokenLength;
+    private int tokenHash;
+
+    private int textLength;
+    // Последний учтенный символ - пробел (в начале текста пробелы не считаются)
+    private boolean lastSpace = true;
+
+    WordFrequencyCounter(Set<String> stopWords) {
+        this.stopWords = stopWords;
+    }
+
+    /**
+     * Добавить очередной фрагмент текста страницы
+     * Слово на границе фрагмента продолжается в следующем: Hel&lt;b&gt;lo&lt;/b&gt; - одно слово.
+     * Границу слова между фрагментами отмечает endWord()
+     *
+     * @param chunk фрагмент текста
+     */
+    void append(CharSequence chunk) {
+        if (chunk == null || isFull()) {
+            return;
+        }
+        int length = chunk.length();
+        int i = 0;
+        while (i < length && !isFull()) {
+            char c = chunk.charAt(i++);
+            if (isWhitespace(c)) {
+                endWord();
+                continue;
+            }
+            if (c == SOFT_HYPHEN || c == ZERO_WIDTH_SPACE) {
+                continue;
+            }
+            int codePoint = c;
+            if (Character.isHighSurrogate(c) && i < length && Character.isLowSurrogate(chunk.charAt(i))) {
+                codePoint = Character.toCodePoint(c, chunk.charAt(i++));
+            }
+            textLength += Character.charCount(codePoint);
+            lastSpace = false;
+            if (isWordPart(codePoint)) {
+                appendToToken(Character.toLowerCase(codePoint));
+            } else {
+                endToken();
+            }
+        }
+        if (textLength >= MAX_TEXT_LENGTH) {
+            // Текст обрезан: слово на границе учитывается как есть
+            endToken();
+        }
+    }
+
+    /**
+     * Граница слова между фрагментами (блочный элемент, &lt;br&gt;), считается одним пробелом
+     */
+    void endWord() {
+        endToken();
+        if (!lastSpace && textLength < MAX_TEXT_LENGTH) {
+            textLength++;
+            lastSpace = true;
+        }
+    }
+
+    /**
+     * @return true, если текста уже достаточно и дальше страницу можно не читать
+     */
+    boolean isFull() {
+        return textLength >= MAX_TEXT_LENGTH || uniqueWords >= MAX_UNIQUE_WORDS;
+    }
+
+    /**
+     * Метод находит самые частые слова в разобранном тексте
+     * При равной частоте выигрывает слово, встреченное раньше
+     *
+     * @param limit количество тегов
+     * @return Set коллекция хештегов
+     */
+    Set<String> topTags(int limit) {
+        // Последнее слово текста
+        endToken();
+        Set<String> tags = new HashSet<>();
+        if (uniqueWords == 0 || limit <= 0) {
+            return tags;
+        }
+
+        // Минимальная куча фиксированного размера из индексов таблицы
+        int[] heap = new int[limit];
+        int heapSize = 0;
+        for (int slot = 0; slot < TABLE_CAPACITY; slot++) {
+            if (words[slot] == null || counts[slot] == STOP_WORD) {
+                continue;
+            }
+            if (heapSize < limit) {
+                heap[heapSize] = slot;
+                siftUp(heap, heapSize++);
+            } else if (less(heap[0], slot)) {
+                heap[0] = slot; // Заменяем элемент с наименьшей частотой
+                siftDown(heap, heapSize);
+            }
+        }
+
+        for (int i = 0; i < heapSize; i++) {
+            tags.add(words[heap[i]]);
+        }
+        log.debug("Сгенерировано {} тегов из {} уникальных слов", tags.size(), uniqueWords);
+        return tags;
+    }
+
+    /**
+     * Пробельный символ, как в StringUtil.isActuallyWhitespace jsoup (вместе с неразрывным пробелом)
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r' || c == NO_BREAK_SPACE;
+    }
+
+    /**
+     * Буква, диакритический знак, апостроф или дефис
+     */
+    private static boolean isWordPart(int codePoint) {
+        if (codePoint == '\'' || codePoint == '-') {
+            return true;
+        }
+        return switch (Character.getType(codePoint)) {
+            case Character.UPPERCASE_LETTER, Character.LOWERCASE_LETTER, Character.TITLECASE_LETTER,
+                 Character.MODIFIER_LETTER, Character.OTHER_LETTER,
+                 Character.NON_SPACING_MARK, Character.ENCLOSING_MARK, Character.COMBINING_SPACING_MARK -> true;
+            default -> false;
+        };
+    }
+
+    private void appendToToken(int codePoint) {
+        if (tokenLength + 2 > token.length) {
+            token = Arrays.copyOf(token, token.length * 2);
+        }
+        if (Character.isBmpCodePoint(codePoint)) {
+            token[tokenLength++] = (char) codePoint;
+            tokenHash = 31 * tokenHash + codePoint;
+        } else {
+            char high = Character.highSurrogate(codePoint);
+            char low = Character.lowSurrogate(codePoint);
+            token[tokenLength++] = high;
+            token[tokenLength++] = low;
+            tokenHash = 31 * (31 * tokenHash + high) + low;
+        }
+    }
+
+    private void endToken() {
+        if (tokenLength >= MIN_WORD_LENGTH) {
+            countToken();
+        }
+        tokenLength = 0;
+        tokenHash = 0;
+    }
+
+    private void countToken() {
+        int hash = tokenHash ^ (tokenHash >>> 16);
+        int mask = TABLE_CAPACITY - 1;
+        int slot = hash & mask;
+        while (words[slot] != null) {
+            if (hashes[slot] == hash && tokenEquals(words[slot])) {
+                if (counts[slot] != STOP_WORD) {
+                    counts[slot]++;
+                }
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        // Слово встретилось впервые
+        String word = new String(token, 0, tokenLength);
+        boolean stopWord = stopWords.contains(word);
+        if (tableSize >= MAX_TABLE_SIZE) {
+            return; // Таблица заполнена, новые слова не учитываются
+        }
+        hashes[slot] = hash;
+        words[slot] = word;
+        counts[slot] = stopWord ? STOP_WORD : 1;
+        order[slot] = tableSize++;
+        if (!stopWord) {
+            uniqueWords++;
+        }
+    }
+
+    private boolean tokenEquals(String word) {
+        if (word.length() != tokenLength) {
+            return false;
+        }
+        for (int i = 0; i < tokenLength; i++) {
+            if (word.charAt(i) != token[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Слово a менее частое, чем b (при равной частоте - встречено позже)
+     */
+    private boolean less(int a, int b) {
+        if (counts[a] != counts[b]) {
+            return counts[a] < counts[b];
+        }
+        return order[a] > order[b];
+    }
+
+    private void siftUp(int[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!less(heap[index], heap[parent])) {
+                return;
+            }
+            swap(heap, index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int size) {
+        int index = 0;
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size) {
+                return;
+            }
+            int right = left + 1;
+            int smallest = right < size && less(heap[right], heap[left]) ? right : left;
+            if (!less(heap[smallest], heap[index])) {
+                return;
+            }
+            swap(heap, index, smallest);
+            index = smallest;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int tmp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = tmp;
+    }
+}
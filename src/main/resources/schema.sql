@@ -1,5 +1,5 @@
-CREATE TABLE IF NOT EXISTS "USERS" (
-	USER_ID UUID DEFAULT RANDOM_UUID() NOT NULL,
+CREATE TABLE IF NOT EXISTS USERS (
+	USER_ID UUID NOT NULL,
 	CHAT_ID BIGINT NOT NULL,
 	USERNAME CHARACTER VARYING(50) NOT NULL,
 	CREATED_AT TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
@@ -7,18 +7,20 @@ CREATE TABLE IF NOT EXISTS "USERS" (
 	CONSTRAINT USERS_PK PRIMARY KEY (USER_ID),
 	CONSTRAINT USERS_USERNAME_UQ UNIQUE (USERNAME)
 );
-CREATE UNIQUE INDEX IF NOT EXISTS PRIMARY_KEY_6 ON "USERS" (USER_ID);
-CREATE UNIQUE INDEX IF NOT EXISTS USERS_CHAT_ID_UQ_INDEX_6 ON "USERS" (CHAT_ID);
-CREATE UNIQUE INDEX IF NOT EXISTS USERS_USERNAME_UQ_INDEX_6 ON "USERS" (USERNAME);
+CREATE UNIQUE INDEX IF NOT EXISTS PRIMARY_KEY_6 ON USERS (USER_ID);
+CREATE UNIQUE INDEX IF NOT EXISTS USERS_CHAT_ID_UQ_INDEX_6 ON USERS (CHAT_ID);
+CREATE UNIQUE INDEX IF NOT EXISTS USERS_USERNAME_UQ_INDEX_6 ON USERS (USERNAME);
+-- Ключи UUID v7 задает приложение (TimeOrderedId), прежнее значение по умолчанию RANDOM_UUID() удаляется.
+ALTER TABLE USERS ALTER COLUMN USER_ID DROP DEFAULT;
 
 COMMENT ON TABLE users IS 'Пользователи';
-COMMENT ON COLUMN users.user_id IS 'Уникальный идентификатор пользователя (UUID)';
+COMMENT ON COLUMN users.user_id IS 'Уникальный идентификатор пользователя (UUID v7)';
 COMMENT ON COLUMN users.chat_id IS 'Идентификатор пользователя в телеграмме';
 COMMENT ON COLUMN users.username IS 'Имя пользователя (уникальное)';
 COMMENT ON COLUMN users.created_at IS 'Дата и время создания записи';
 
 CREATE TABLE IF NOT EXISTS SAVED_LINKS (
-	LINK_ID UUID DEFAULT RANDOM_UUID() NOT NULL,
+	LINK_ID UUID NOT NULL,
 	USER_ID UUID NOT NULL,
 	ORIGIN_URL CHARACTER VARYING(2048) NOT NULL,
 	TITLE CHARACTER VARYING(5000),
@@ -32,32 +34,84 @@ CREATE TABLE IF NOT EXISTS SAVED_LINKS (
 
 CREATE UNIQUE INDEX IF NOT EXISTS PRIMARY_KEY_C ON SAVED_LINKS (LINK_ID);
 CREATE UNIQUE INDEX IF NOT EXISTS SAVED_LINKS_UNIQUE_INDEX_C ON SAVED_LINKS (LINK_ID,USER_ID);
+ALTER TABLE SAVED_LINKS ALTER COLUMN LINK_ID DROP DEFAULT;
 CREATE INDEX IF NOT EXISTS SAVED_LINKS_USERS_FK_INDEX_C ON SAVED_LINKS (USER_ID);
 CREATE INDEX IF NOT EXISTS SAVED_LINKS_USER_ID_DESCRIPTION_IDX ON SAVED_LINKS (USER_ID,DESCRIPTION);
 CREATE INDEX IF NOT EXISTS SAVED_LINKS_USER_ID_TITLE_IDX ON SAVED_LINKS (USER_ID,TITLE);
 CREATE INDEX IF NOT EXISTS SAVED_LINKS_USER_ID_TITLE_DESCRIPT_IDX ON SAVED_LINKS (USER_ID,TITLE,DESCRIPTION);
+CREATE INDEX IF NOT EXISTS SAVED_LINKS_USER_ID_CREATED_AT_IDX ON SAVED_LINKS (USER_ID,CREATED_AT,LINK_ID);
+ALTER TABLE SAVED_LINKS ADD COLUMN IF NOT EXISTS URL_HASH CHARACTER(64);
+CREATE UNIQUE INDEX IF NOT EXISTS SAVED_LINKS_USER_ID_URL_HASH_UQ ON SAVED_LINKS (USER_ID,URL_HASH);
+ALTER TABLE SAVED_LINKS ADD COLUMN IF NOT EXISTS ETAG CHARACTER VARYING(256);
+ALTER TABLE SAVED_LINKS ADD COLUMN IF NOT EXISTS LAST_MODIFIED CHARACTER VARYING(256);
+ALTER TABLE SAVED_LINKS ADD COLUMN IF NOT EXISTS CHECKED_AT TIMESTAMP;
+ALTER TABLE SAVED_LINKS ADD COLUMN IF NOT EXISTS FAIL_COUNT INTEGER DEFAULT 0 NOT NULL;
+ALTER TABLE SAVED_LINKS ADD COLUMN IF NOT EXISTS DEAD BOOLEAN DEFAULT FALSE NOT NULL;
 
 COMMENT ON TABLE saved_links IS 'Сохраненные ссылки';
 COMMENT ON COLUMN saved_links.origin_url IS 'Ссылка';
+COMMENT ON COLUMN saved_links.url_hash IS 'SHA-256 канонической ссылки для поиска дубликатов';
 COMMENT ON COLUMN saved_links.title IS 'Заголовок';
 COMMENT ON COLUMN saved_links.description IS 'Описание';
 COMMENT ON COLUMN saved_links.image_url IS 'Ссылка на картинку';
 COMMENT ON COLUMN saved_links.created_at IS 'Дата и время добавления';
+COMMENT ON COLUMN saved_links.etag IS 'ETag страницы при последней загрузке';
+COMMENT ON COLUMN saved_links.last_modified IS 'Last-Modified страницы при последней загрузке';
+COMMENT ON COLUMN saved_links.checked_at IS 'Дата и время последней фоновой проверки';
+COMMENT ON COLUMN saved_links.fail_count IS 'Неудачных проверок подряд';
+COMMENT ON COLUMN saved_links.dead IS 'Ссылка не работает: страница удалена или недоступна при нескольких проверках';
 COMMENT ON COLUMN saved_links.user_id IS 'Пользователь';
 
-CREATE TABLE IF NOT EXISTS SAVED_LINK_TAGS (
-	ID UUID DEFAULT RANDOM_UUID() NOT NULL,
-	SAVED_LINK_LINK_ID UUID NOT NULL,
-	TAGS CHARACTER VARYING(250) NOT NULL,
-	CONSTRAINT SAVED_LINK_TAGS_PK PRIMARY KEY (ID),
-	CONSTRAINT SAVED_LINK_TAGS_SAVED_LINKS_FK FOREIGN KEY (SAVED_LINK_LINK_ID) REFERENCES SAVED_LINKS(LINK_ID)
+CREATE TABLE IF NOT EXISTS TAGS (
+	TAG_ID INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+	NAME CHARACTER VARYING(250) NOT NULL,
+	CONSTRAINT TAGS_PK PRIMARY KEY (TAG_ID),
+	CONSTRAINT TAGS_NAME_UQ UNIQUE (NAME)
+);
+
+COMMENT ON TABLE tags IS 'Словарь тегов';
+COMMENT ON COLUMN tags.tag_id IS 'Идентификатор тега';
+COMMENT ON COLUMN tags.name IS 'Тег';
+
+CREATE TABLE IF NOT EXISTS LINK_TAGS (
+	LINK_ID UUID NOT NULL,
+	TAG_ID INTEGER NOT NULL,
+	CONSTRAINT LINK_TAGS_PK PRIMARY KEY (LINK_ID,TAG_ID),
+	CONSTRAINT LINK_TAGS_SAVED_LINKS_FK FOREIGN KEY (LINK_ID) REFERENCES SAVED_LINKS(LINK_ID),
+	CONSTRAINT LINK_TAGS_TAGS_FK FOREIGN KEY (TAG_ID) REFERENCES TAGS(TAG_ID)
+);
+CREATE INDEX IF NOT EXISTS LINK_TAGS_TAG_ID_IDX ON LINK_TAGS (TAG_ID,LINK_ID);
+
+COMMENT ON TABLE link_tags IS 'Теги ссылок';
+COMMENT ON COLUMN link_tags.link_id IS 'Идентификатор ссылки';
+COMMENT ON COLUMN link_tags.tag_id IS 'Идентификатор тега из словаря';
+
+-- Теги из прежней таблицы SAVED_LINK_TAGS переносит при запуске LegacyTagMigration
+
+CREATE TABLE IF NOT EXISTS IMPORT_JOBS (
+	JOB_ID UUID NOT NULL,
+	USER_ID UUID NOT NULL,
+	CHAT_ID BIGINT NOT NULL,
+	FILE_ID CHARACTER VARYING(256) NOT NULL,
+	FILE_NAME CHARACTER VARYING(256),
+	STATUS CHARACTER VARYING(20) NOT NULL,
+	PROCESSED INTEGER DEFAULT 0 NOT NULL,
+	IMPORTED INTEGER DEFAULT 0 NOT NULL,
+	MESSAGE_ID INTEGER,
+	CREATED_AT TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+	UPDATED_AT TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+	CONSTRAINT IMPORT_JOBS_PK PRIMARY KEY (JOB_ID),
+	CONSTRAINT IMPORT_JOBS_USERS_FK FOREIGN KEY (USER_ID) REFERENCES USERS(USER_ID)
 );
-CREATE UNIQUE INDEX IF NOT EXISTS PRIMARY_KEY_2 ON SAVED_LINK_TAGS (ID);
-CREATE INDEX IF NOT EXISTS SAVED_LINK_TAGS_SAVED_LINKS_FK_INDEX_2 ON SAVED_LINK_TAGS (SAVED_LINK_LINK_ID);
-CREATE INDEX IF NOT EXISTS SAVED_LINK_TAGS_SAVED_LINK_LINK_ID_IDX ON SAVED_LINK_TAGS (SAVED_LINK_LINK_ID,TAGS);
-CREATE INDEX IF NOT EXISTS SAVED_LINK_TAGS_TAGS_IDX ON SAVED_LINK_TAGS (TAGS);
-
-COMMENT ON TABLE saved_link_tags IS 'Теги';
-COMMENT ON COLUMN saved_link_tags.id IS 'Уникальный идентификатор (UUID)';
-COMMENT ON COLUMN saved_link_tags.saved_link_link_id IS 'Идентификатор ссылки';
-COMMENT ON COLUMN saved_link_tags.tags IS 'Теги';
\ No newline at end of file
+ALTER TABLE IMPORT_JOBS ALTER COLUMN JOB_ID DROP DEFAULT;
+CREATE INDEX IF NOT EXISTS IMPORT_JOBS_STATUS_IDX ON IMPORT_JOBS (STATUS);
+CREATE INDEX IF NOT EXISTS IMPORT_JOBS_USERS_FK_IDX ON IMPORT_JOBS (USER_ID);
+
+COMMENT ON TABLE import_jobs IS 'Задания импорта закладок';
+COMMENT ON COLUMN import_jobs.chat_id IS 'Чат, в который сообщается о ходе импорта';
+COMMENT ON COLUMN import_jobs.file_id IS 'Идентификатор файла в телеграмме';
+COMMENT ON COLUMN import_jobs.file_name IS 'Имя файла';
+COMMENT ON COLUMN import_jobs.status IS 'Статус: RUNNING, DONE, FAILED';
+COMMENT ON COLUMN import_jobs.processed IS 'Сколько записей файла обработано';
+COMMENT ON COLUMN import_jobs.imported IS 'Сколько ссылок сохранено';
+COMMENT ON COLUMN import_jobs.message_id IS 'Сообщение с ходом импорта';
@@ -0,0 +1,78 @@
+package ru.plastinin.memo_linker_bot.bot;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.webmvc.test.autoconfigure.WebMvcTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = WebhookController.class,
+        properties = {"bot.mode=webhook", "bot.webhook.secret-token=test-secret"})
+class WebhookControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private MemoLinkerBot memoLinkerBot;
+
+    @Test
+    void recordedMessageIsPassedToBot() throws Exception {
+        mockMvc.perform(post("/telegram/webhook")
+                        .header(WebhookController.SECRET_TOKEN_HEADER, "test-secret")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(recorded("message-help.json")))
+                .andExpect(status().isOk());
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(memoLinkerBot).onUpdateReceived(update.capture());
+        assertEquals("/help", update.getValue().getMessage().getText());
+        assertEquals(123456789L, update.getValue().getMessage().getChatId());
+    }
+
+    @Test
+    void recordedCallbackIsPassedToBot() throws Exception {
+        mockMvc.perform(post("/telegram/webhook")
+                        .header(WebhookController.SECRET_TOKEN_HEADER, "test-secret")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(recorded("callback-list-next.json")))
+                .andExpect(status().isOk());
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(memoLinkerBot).onUpdateReceived(update.capture());
+        assertEquals("list:next:kx3n1c8_0b6f3c1e-6a4d-4b7a-9f51-0c2d6a1f0e11", update.getValue().getCallbackQuery().getData());
+    }
+
+    @Test
+    void wrongSecretTokenIsRejected() throws Exception {
+        mockMvc.perform(post("/telegram/webhook")
+                        .header(WebhookController.SECRET_TOKEN_HEADER, "wrong")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(recorded("message-help.json")))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/telegram/webhook")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(recorded("message-help.json")))
+                .andExpect(status().isUnauthorized());
+
+        verifyNoInteractions(memoLinkerBot);
+    }
+
+    private byte[] recorded(String name) throws IOException {
+        try (InputStream input = getClass().getResourceAsStream("/updates/" + name)) {
+            return input.readAllBytes();
+        }
+    }
+}
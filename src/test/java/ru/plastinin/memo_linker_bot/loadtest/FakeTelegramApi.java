@@ -0,0 +1,220 @@
+package ru.plastinin.memo_linker_bot.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Поддельный Telegram Bot API для нагрузочного теста
+ * Отдает боту обновления через getUpdates (long polling с offset, как настоящий API),
+ * отвечает на sendMessage и editMessageText сообщением и передает каждый ответ бота получателю.
+ * Остальные методы (deleteWebhook, answerCallbackQuery и т.п.) просто возвращают true.
+ */
+@Slf4j
+class FakeTelegramApi implements AutoCloseable {
+
+    /**
+     * Получатель ответов бота
+     */
+    interface ReplyListener {
+        void onReply(long chatId, String method, String text);
+    }
+
+    private static final long MAX_POLL_WAIT_MILLIS = 1000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+
+    // Обновления, еще не подтвержденные ботом (offset), по update_id
+    private final TreeMap<Integer, ObjectNode> updates = new TreeMap<>();
+    private final AtomicInteger updateIds = new AtomicInteger();
+    private final AtomicInteger messageIds = new AtomicInteger();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong sentMessages = new AtomicLong();
+    private final AtomicLong editedMessages = new AtomicLong();
+
+    private volatile ReplyListener listener = (chatId, method, text) -> {
+    };
+
+    FakeTelegramApi(String token) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        this.server.createContext("/bot" + token + "/", this::handle);
+        this.server.start();
+    }
+
+    /**
+     * Адрес для bot.api-url
+     */
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/bot";
+    }
+
+    void setListener(ReplyListener listener) {
+        this.listener = listener;
+    }
+
+    long requests() {
+        return requests.get();
+    }
+
+    long sentMessages() {
+        return sentMessages.get();
+    }
+
+    long editedMessages() {
+        return editedMessages.get();
+    }
+
+    /**
+     * Новое текстовое сообщение пользователя в личном чате
+     *
+     * @param chatId chatId
+     * @param text   текст сообщения
+     */
+    void sendText(long chatId, String text) {
+        ObjectNode chat = objectMapper.createObjectNode()
+                .put("id", chatId)
+                .put("type", "private")
+                .put("username", "load" + chatId);
+        ObjectNode from = objectMapper.createObjectNode()
+                .put("id", chatId)
+                .put("is_bot", false)
+                .put("first_name", "Load")
+                .put("username", "load" + chatId);
+        ObjectNode message = objectMapper.createObjectNode()
+                .put("message_id", messageIds.incrementAndGet())
+                .put("date", System.currentTimeMillis() / 1000)
+                .put("text", text);
+        message.set("from", from);
+        message.set("chat", chat);
+
+        int updateId = updateIds.incrementAndGet();
+        ObjectNode update = objectMapper.createObjectNode().put("update_id", updateId);
+        update.set("message", message);
+        synchronized (updates) {
+            updates.put(updateId, update);
+            updates.notifyAll();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String method = path.substring(path.lastIndexOf('/') + 1).toLowerCase();
+            JsonNode request = readBody(exchange);
+            JsonNode result = switch (method) {
+                case "getupdates" -> getUpdates(request);
+                case "sendmessage" -> {
+                    sentMessages.incrementAndGet();
+                    yield reply(request, method);
+                }
+                case "editmessagetext" -> {
+                    editedMessages.incrementAndGet();
+                    yield reply(request, method);
+                }
+                case "getme" -> objectMapper.createObjectNode()
+                        .put("id", 1)
+                        .put("is_bot", true)
+                        .put("first_name", "Load test")
+                        .put("username", "load_test_bot");
+                default -> objectMapper.getNodeFactory().booleanNode(true);
+            };
+            ObjectNode response = objectMapper.createObjectNode().put("ok", true);
+            response.set("result", result);
+            byte[] body = objectMapper.writeValueAsBytes(response);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private JsonNode readBody(HttpExchange exchange) throws IOException {
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        if (body.length == 0) {
+            return objectMapper.createObjectNode();
+        }
+        return objectMapper.readTree(new String(body, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * getUpdates: обновления начиная с offset, ожидание новых не дольше timeout (и не дольше секунды)
+     */
+    private ArrayNode getUpdates(JsonNode request) throws InterruptedException {
+        int offset = request.path("offset").asInt(0);
+        int limit = request.path("limit").asInt(100);
+        long waitMillis = Math.min(MAX_POLL_WAIT_MILLIS, request.path("timeout").asLong(0) * 1000);
+        long deadline = System.currentTimeMillis() + waitMillis;
+
+        ArrayNode result = objectMapper.createArrayNode();
+        synchronized (updates) {
+            // Обновления до offset бот уже получил
+            updates.headMap(offset).clear();
+            long wait;
+            while (updates.isEmpty() && (wait = deadline - System.currentTimeMillis()) > 0) {
+                updates.wait(wait);
+            }
+            for (Map.Entry<Integer, ObjectNode> entry : updates.entrySet()) {
+                if (result.size() >= limit) {
+                    break;
+                }
+                result.add(entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Ответ на sendMessage / editMessageText: сообщение бота в чате
+     */
+    private ObjectNode reply(JsonNode request, String method) {
+        long chatId = request.path("chat_id").asLong();
+        String text = request.path("text").asText("");
+        int messageId = request.has("message_id") ? request.path("message_id").asInt() : messageIds.incrementAndGet();
+
+        ObjectNode chat = objectMapper.createObjectNode().put("id", chatId).put("type", "private");
+        ObjectNode message = objectMapper.createObjectNode()
+                .put("message_id", messageId)
+                .put("date", System.currentTimeMillis() / 1000)
+                .put("text", text);
+        message.set("chat", chat);
+
+        try {
+            listener.onReply(chatId, method, text);
+        } catch (RuntimeException e) {
+            log.error("Ошибка обработки ответа бота: {}", e.getMessage());
+        }
+        return message;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        synchronized (updates) {
+            updates.notifyAll();
+        }
+    }
+}
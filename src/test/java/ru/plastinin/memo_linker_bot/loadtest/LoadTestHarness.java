@@ -0,0 +1,331 @@
+package ru.plastinin.memo_linker_bot.loadtest;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.plastinin.memo_linker_bot.MemoLinkerBotApplication;
+import ru.plastinin.memo_linker_bot.constants.MessageConstants;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Нагрузочный тест: приложение целиком против поддельного Telegram Bot API и локального сайта
+ * Каждый чат - пользователь, который отправляет следующую команду сразу после ответа на предыдущую
+ * (/start, затем команды сценария). Время команды - от появления обновления в getUpdates
+ * до окончательного ответа бота (для /save - замены сообщения "сохраняю..." результатом).
+ * По каждому сценарию выводится пропускная способность, p50/p99 времени команд, использование heap
+ * и количество запросов к базе (статистика запросов H2, INFORMATION_SCHEMA.QUERY_STATISTICS).
+ * <p>
+ * Запуск: ./mvnw -Ploadtest test-compile exec:exec -Dloadtest.args="scenarios=commands,save chats=2000"
+ * <p>
+ * Параметры (ключ=значение): scenarios, chats, commands, page-size (байт), page-latency (мс),
+ * telegram-limits (true - ограничения отправки как в Telegram), write-behind (true - пакетная запись /save),
+ * save-concurrency (bot.save.max-concurrency), timeout (секунд на сценарий).
+ * <p>
+ * Сравнение записи /save: scenarios=save write-behind=false и scenarios=save write-behind=true save-concurrency=256.
+ */
+public class LoadTestHarness {
+
+    private static final String TOKEN = "123456:loadtest";
+
+    /**
+     * Сценарий нагрузки
+     *
+     * @param name        имя сценария
+     * @param chats       количество чатов
+     * @param commands    команд на чат после /start
+     * @param mix         команды и их доля
+     * @param pageSize    размер страниц для /save, байт
+     * @param pageLatency задержка ответа сайта
+     */
+    record Scenario(String name, int chats, int commands, Map<String, Integer> mix, int pageSize,
+                    Duration pageLatency) {
+
+        Scenario with(Map<String, String> args) {
+            return new Scenario(name,
+                    Integer.parseInt(args.getOrDefault("chats", String.valueOf(chats))),
+                    Integer.parseInt(args.getOrDefault("commands", String.valueOf(commands))),
+                    mix,
+                    Integer.parseInt(args.getOrDefault("page-size", String.valueOf(pageSize))),
+                    args.containsKey("page-latency")
+                            ? Duration.ofMillis(Long.parseLong(args.get("page-latency")))
+                            : pageLatency);
+        }
+    }
+
+    static final List<Scenario> SCENARIOS = List.of(
+            new Scenario("commands", 1000, 5, Map.of("/list", 2, "/find", 2, "/tags", 1), 0, Duration.ZERO),
+            new Scenario("save", 1000, 3, Map.of("/save", 1), 50 * 1024, Duration.ofMillis(50)),
+            new Scenario("save-slow-sites", 500, 2, Map.of("/save", 1), 200 * 1024, Duration.ofSeconds(2)),
+            new Scenario("mixed", 2000, 5, Map.of("/save", 1, "/list", 2, "/find", 2, "/tags", 1),
+                    50 * 1024, Duration.ofMillis(200)));
+
+    private final FakeTelegramApi telegram;
+    private final PageStub pages;
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration timeout;
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    LoadTestHarness(FakeTelegramApi telegram, PageStub pages, JdbcTemplate jdbcTemplate, Duration timeout) {
+        this.telegram = telegram;
+        this.pages = pages;
+        this.jdbcTemplate = jdbcTemplate;
+        this.timeout = timeout;
+    }
+
+    public static void main(String[] argv) throws Exception {
+        Map<String, String> args = new HashMap<>();
+        for (String arg : argv) {
+            int separator = arg.indexOf('=');
+            if (separator > 0) {
+                args.put(arg.substring(0, separator), arg.substring(separator + 1));
+            }
+        }
+        Set<String> names = new LinkedHashSet<>(Arrays.asList(args.getOrDefault("scenarios",
+                String.join(",", SCENARIOS.stream().map(Scenario::name).toList())).split(",")));
+        boolean telegramLimits = Boolean.parseBoolean(args.getOrDefault("telegram-limits", "false"));
+        boolean writeBehind = Boolean.parseBoolean(args.getOrDefault("write-behind", "false"));
+        String saveConcurrency = args.get("save-concurrency");
+        Duration timeout = Duration.ofSeconds(Long.parseLong(args.getOrDefault("timeout", "600")));
+
+        try (FakeTelegramApi telegram = new FakeTelegramApi(TOKEN);
+             PageStub pages = new PageStub();
+             ConfigurableApplicationContext context = start(telegram, telegramLimits, writeBehind, saveConcurrency)) {
+            LoadTestHarness harness = new LoadTestHarness(telegram, pages, context.getBean(JdbcTemplate.class), timeout);
+            int offset = 0;
+            for (Scenario scenario : SCENARIOS) {
+                offset += 1_000_000;
+                if (names.contains(scenario.name())) {
+                    harness.run(scenario.with(args), offset).print(System.out);
+                }
+            }
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Запуск приложения: база H2 в памяти, Bot API - поддельный
+     * Без telegram-limits ограничения очереди исходящих сообщений сняты, чтобы измерять само приложение
+     */
+    private static ConfigurableApplicationContext start(FakeTelegramApi telegram, boolean telegramLimits,
+                                                        boolean writeBehind, String saveConcurrency) {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1;MODE=PostgreSQL"
+                        + ";QUERY_STATISTICS=TRUE;QUERY_STATISTICS_MAX_ENTRIES=100000",
+                "--bot.token=" + TOKEN,
+                "--bot.username=load_test_bot",
+                "--bot.mode=polling",
+                "--bot.refresh.enabled=false",
+                "--bot.api-url=" + telegram.baseUrl(),
+                "--server.port=0",
+                "--management.server.port=0",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                "--bot.save.write-behind.enabled=" + writeBehind));
+        if (saveConcurrency != null) {
+            args.add("--bot.save.max-concurrency=" + saveConcurrency);
+        }
+        if (!telegramLimits) {
+            args.add("--bot.outbound.global-rate=100000");
+            args.add("--bot.outbound.per-chat-interval=PT0S");
+        }
+        return new SpringApplicationBuilder(MemoLinkerBotApplication.class).run(args.toArray(String[]::new));
+    }
+
+    /**
+     * Выполнить сценарий
+     *
+     * @param scenario Scenario
+     * @param chatBase первый chatId сценария (чаты разных сценариев не пересекаются)
+     * @return Report
+     */
+    Report run(Scenario scenario, long chatBase) throws InterruptedException {
+        pages.configure(scenario.pageSize(), scenario.pageLatency());
+        System.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+        AtomicLong heapMax = new AtomicLong(heapBefore);
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> heapMax.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                0, 100, TimeUnit.MILLISECONDS);
+
+        Report report = new Report(scenario);
+        Map<Long, ChatSession> sessions = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(scenario.chats());
+        List<String> commands = commandSequence(scenario);
+        telegram.setListener((chatId, method, text) -> {
+            ChatSession session = sessions.get(chatId);
+            if (session != null) {
+                session.onReply(method, text);
+            }
+        });
+
+        long statementsBefore = statements();
+        long start = System.nanoTime();
+        for (int i = 0; i < scenario.chats(); i++) {
+            long chatId = chatBase + i;
+            ChatSession session = new ChatSession(chatId, commands, report, done);
+            sessions.put(chatId, session);
+            session.next();
+        }
+        boolean completed = done.await(timeout.toSeconds(), TimeUnit.SECONDS);
+        report.finish(System.nanoTime() - start, completed ? 0 : done.getCount(),
+                heapMax.get() - heapBefore, memory.getHeapMemoryUsage().getUsed() - heapBefore,
+                statements() - statementsBefore);
+        sampler.shutdownNow();
+        telegram.setListener((chatId, method, text) -> {
+        });
+        return report;
+    }
+
+    /**
+     * Выполнено запросов к базе с запуска приложения
+     */
+    private long statements() {
+        Long count = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(EXECUTION_COUNT), 0) FROM INFORMATION_SCHEMA.QUERY_STATISTICS", Long.class);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Команды каждого чата: /start и команды сценария по их долям
+     */
+    private List<String> commandSequence(Scenario scenario) {
+        List<String> weighted = new ArrayList<>();
+        scenario.mix().entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> weighted.addAll(Collections.nCopies(entry.getValue(), entry.getKey())));
+        List<String> commands = new ArrayList<>();
+        commands.add("/start");
+        for (int i = 0; i < scenario.commands(); i++) {
+            commands.add(weighted.get(i % weighted.size()));
+        }
+        return commands;
+    }
+
+    /**
+     * Пользователь одного чата: следующая команда отправляется после окончательного ответа на предыдущую
+     */
+    private final class ChatSession {
+
+        private final long chatId;
+        private final List<String> commands;
+        private final Report report;
+        private final CountDownLatch done;
+        private int index = -1;
+        private long sentAt;
+
+        ChatSession(long chatId, List<String> commands, Report report, CountDownLatch done) {
+            this.chatId = chatId;
+            this.commands = commands;
+            this.report = report;
+            this.done = done;
+        }
+
+        synchronized void next() {
+            index++;
+            if (index >= commands.size()) {
+                done.countDown();
+                return;
+            }
+            String command = commands.get(index);
+            String text = switch (command) {
+                case "/save" -> "/save " + pages.url("page/" + chatId + "/" + index) + " #loadtest";
+                case "/find" -> "/find " + PageStub.WORDS[(int) ((chatId + index) % PageStub.WORDS.length)];
+                default -> command;
+            };
+            sentAt = System.nanoTime();
+            telegram.sendText(chatId, text);
+        }
+
+        synchronized void onReply(String method, String text) {
+            if (index < 0 || index >= commands.size()) {
+                return;
+            }
+            // Промежуточный ответ: дальше придет результат
+            if (text.equals(MessageConstants.MESSAGE_SAVE_IN_PROGRESS)) {
+                return;
+            }
+            report.record(commands.get(index), System.nanoTime() - sentAt,
+                    text.contains(MessageConstants.MESSAGE_BUSY.strip()));
+            next();
+        }
+    }
+
+    /**
+     * Результаты сценария
+     */
+    static final class Report {
+
+        private final Scenario scenario;
+        private final Map<String, List<Long>> latencies = new ConcurrentSkipListMap<>();
+        private final AtomicInteger rejected = new AtomicInteger();
+        private long elapsedNanos;
+        private long unfinishedChats;
+        private long heapMaxDelta;
+        private long heapAfterDelta;
+        private long statements;
+
+        Report(Scenario scenario) {
+            this.scenario = scenario;
+        }
+
+        void record(String command, long nanos, boolean busy) {
+            if (busy) {
+                rejected.incrementAndGet();
+            }
+            latencies.computeIfAbsent(command, key -> Collections.synchronizedList(new ArrayList<>())).add(nanos);
+        }
+
+        void finish(long elapsedNanos, long unfinishedChats, long heapMaxDelta, long heapAfterDelta,
+                    long statements) {
+            this.elapsedNanos = elapsedNanos;
+            this.unfinishedChats = unfinishedChats;
+            this.heapMaxDelta = heapMaxDelta;
+            this.heapAfterDelta = heapAfterDelta;
+            this.statements = statements;
+        }
+
+        void print(PrintStream out) {
+            long total = latencies.values().stream().mapToLong(List::size).sum();
+            double seconds = elapsedNanos / 1e9;
+            out.printf("%nСценарий %s: %d чатов, %d команд за %.1f с, %.1f команд/с%n",
+                    scenario.name(), scenario.chats(), total, seconds, total / seconds);
+            out.printf("  отклонено (очередь переполнена): %d, чатов без ответа: %d%n", rejected.get(), unfinishedChats);
+            out.printf("  heap: максимум +%d МБ, после сценария +%d МБ%n",
+                    heapMaxDelta / (1024 * 1024), heapAfterDelta / (1024 * 1024));
+            out.printf("  запросов к базе: %d, на команду: %.1f%n", statements, total == 0 ? 0.0 : (double) statements / total);
+            out.printf("  %-8s %8s %10s %10s %10s%n", "команда", "кол-во", "p50, мс", "p99, мс", "max, мс");
+            List<Long> all = new ArrayList<>();
+            latencies.forEach((command, values) -> {
+                List<Long> sorted;
+                synchronized (values) {
+                    sorted = new ArrayList<>(values);
+                }
+                all.addAll(sorted);
+                printRow(out, command, sorted);
+            });
+            printRow(out, "всего", all);
+        }
+
+        private static void printRow(PrintStream out, String command, List<Long> values) {
+            if (values.isEmpty()) {
+                return;
+            }
+            Collections.sort(values);
+            out.printf("  %-8s %8d %10.1f %10.1f %10.1f%n", command, values.size(),
+                    percentile(values, 0.50), percentile(values, 0.99), values.getLast() / 1e6);
+        }
+
+        private static double percentile(List<Long> sorted, double quantile) {
+            int index = (int) Math.ceil(quantile * sorted.size()) - 1;
+            return sorted.get(Math.max(0, index)) / 1e6;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package ru.plastinin.memo_linker_bot.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Локальный сайт для команды /save нагрузочного теста
+ * Любой путь отдает HTML-страницу заданного размера с заданной задержкой перед ответом.
+ * Текст страницы - русские и английские слова, поэтому авто-теги считаются как на настоящих страницах.
+ */
+class PageStub implements AutoCloseable {
+
+    static final String[] WORDS = {
+            "spring", "boot", "java", "postgres", "index", "connection", "latency", "throughput", "cache",
+            "telegram", "bot", "query", "stream", "thread", "virtual", "memory", "server", "request",
+            "индекс", "запрос", "база", "данных", "поиск", "ссылка", "страница", "кэш", "поток",
+            "память", "сервер", "задержка", "нагрузка", "сообщение", "тег", "статья"
+    };
+
+    private final HttpServer server;
+    private final AtomicLong requests = new AtomicLong();
+
+    private volatile byte[] page = new byte[0];
+    private volatile Duration latency = Duration.ZERO;
+
+    PageStub() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    /**
+     * Настройка страниц для сценария
+     *
+     * @param size    размер страницы в байтах
+     * @param latency задержка ответа
+     */
+    void configure(int size, Duration latency) {
+        this.page = render(size);
+        this.latency = latency;
+    }
+
+    String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/" + path;
+    }
+
+    long requests() {
+        return requests.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            Thread.sleep(latency);
+            byte[] body = page;
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static byte[] render(int size) {
+        Random random = new Random(size);
+        StringBuilder html = new StringBuilder(size + 256);
+        html.append("<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>Нагрузочный тест: ")
+                .append(WORDS[random.nextInt(WORDS.length)]).append(' ').append(WORDS[random.nextInt(WORDS.length)])
+                .append("</title><meta name=\"description\" content=\"Страница для нагрузочного теста\">")
+                .append("<meta property=\"og:image\" content=\"/cover.png\"></head><body><article>");
+        while (html.length() < size) {
+            html.append("<p>");
+            for (int i = 0; i < 60; i++) {
+                html.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            html.append("</p>\n");
+        }
+        html.append("</article></body></html>");
+        return html.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
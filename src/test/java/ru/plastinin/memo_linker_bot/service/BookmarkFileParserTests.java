@@ -0,0 +1,102 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import org.junit.jupiter.api.Test;
+import ru.plastinin.memo_linker_bot.dto.Bookmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BookmarkFileParserTests {
+
+    private static List<Bookmark> parse(String fileName, byte[] content) throws IOException {
+        InputStream input = BookmarkFileParser.open(new ByteArrayInputStream(content));
+        List<Bookmark> bookmarks = new ArrayList<>();
+        BookmarkFileParser.parse(BookmarkFileParser.detectFormat(fileName, input), input, bookmarks::add);
+        return bookmarks;
+    }
+
+    private static List<Bookmark> parse(String fileName, String content) throws IOException {
+        return parse(fileName, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void netscapeHtml() throws IOException {
+        String html = """
+                <!DOCTYPE NETSCAPE-Bookmark-file-1>
+                <TITLE>Bookmarks</TITLE>
+                <DL><p>
+                    <DT><H3>Java</H3>
+                    <DL><p>
+                        <DT><A HREF="https://spring.io/" ADD_DATE="1700000000" TAGS="java,spring">Spring</A>
+                    </DL><p>
+                    <DT><A HREF="https://example.com/a">Пример</A>
+                </DL><p>
+                """;
+        assertEquals(List.of(
+                        new Bookmark("https://spring.io/", "Spring", List.of("java", "spring")),
+                        new Bookmark("https://example.com/a", "Пример", List.of())),
+                parse("bookmarks.html", html));
+    }
+
+    @Test
+    void pocketHtmlAndCsv() throws IOException {
+        String html = """
+                <!DOCTYPE html>
+                <html><body><h1>Unread</h1><ul>
+                <li><a href="https://example.com/read" time_added="1700000000" tags="news,tech">Read later</a></li>
+                </ul></body></html>
+                """;
+        assertEquals(List.of(new Bookmark("https://example.com/read", "Read later", List.of("news", "tech"))),
+                parse("ril_export.html", html));
+
+        String csv = """
+                title,url,time_added,tags,status
+                Read later,https://example.com/read,1700000000,news|tech,unread
+                """;
+        assertEquals(List.of(new Bookmark("https://example.com/read", "Read later", List.of("news", "tech"))),
+                parse("part_000000.csv", csv));
+    }
+
+    @Test
+    void chromeJsonAndJsonLines() throws IOException {
+        String chrome = """
+                {"roots": {"bookmark_bar": {"children": [
+                    {"name": "Spring", "type": "url", "url": "https://spring.io/"},
+                    {"name": "Folder", "type": "folder", "children": [
+                        {"name": "Пример", "type": "url", "url": "https://example.com/a"}
+                    ]}
+                ], "name": "Bookmarks bar", "type": "folder"}}, "version": 1}
+                """;
+        assertEquals(List.of(
+                        new Bookmark("https://spring.io/", "Spring", List.of()),
+                        new Bookmark("https://example.com/a", "Пример", List.of())),
+                parse("Bookmarks", chrome));
+
+        String jsonLines = """
+                {"url": "https://spring.io/", "title": "Spring", "tags": ["java", "spring"]}
+                {"url": "https://example.com/a", "title": "Пример", "tags": "news #tech"}
+                """;
+        assertEquals(List.of(
+                        new Bookmark("https://spring.io/", "Spring", List.of("java", "spring")),
+                        new Bookmark("https://example.com/a", "Пример", List.of("news", "tech"))),
+                parse("links.jsonl", jsonLines));
+    }
+
+    @Test
+    void gzipIsUnpacked() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write("url;title;tags\nhttps://example.com/a;Пример;news\n".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(List.of(new Bookmark("https://example.com/a", "Пример", List.of("news"))),
+                parse("links.csv.gz", bytes.toByteArray()));
+    }
+}
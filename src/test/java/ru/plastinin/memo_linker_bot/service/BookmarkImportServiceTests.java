@@ -0,0 +1,121 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.plastinin.memo_linker_bot.constants.MessageConstants;
+import ru.plastinin.memo_linker_bot.exception.ServiceException;
+import ru.plastinin.memo_linker_bot.module.ImportJob;
+import ru.plastinin.memo_linker_bot.module.User;
+import ru.plastinin.memo_linker_bot.module.UuidV7;
+import ru.plastinin.memo_linker_bot.repository.ImportJobRepository;
+import ru.plastinin.memo_linker_bot.repository.UserRepository;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Импорт идет своим потоком в своих транзакциях: тесты работают без общей транзакции и чистят таблицы сами
+@DataJpaTest
+@Import(TagDictionary.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BookmarkImportServiceTests {
+
+    private static final String RACED_URL = "https://example.com/raced";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private TagDictionary tagDictionary;
+
+    @Autowired
+    private ImportJobRepository importJobRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private final UrlCanonicalizer urlCanonicalizer = new UrlCanonicalizer(new SimpleMeterRegistry(),
+            new OkHttpClient(), 100, Duration.ofDays(1), Duration.ofSeconds(1));
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.getJdbcTemplate().update("DELETE FROM LINK_TAGS");
+        jdbcTemplate.getJdbcTemplate().update("DELETE FROM SAVED_LINKS");
+        jdbcTemplate.getJdbcTemplate().update("DELETE FROM IMPORT_JOBS");
+        jdbcTemplate.getJdbcTemplate().update("DELETE FROM USERS");
+    }
+
+    @Test
+    void linkSavedDuringPageFetchIsSkipped() throws Exception {
+        User user = userRepository.save(User.builder().chatId(1L).username("user").build());
+
+        // Пока импорт загружает страницу, та же ссылка сохраняется командой /save
+        PageMetadataCache pageMetadataCache = mock(PageMetadataCache.class);
+        when(pageMetadataCache.get(anyString())).thenAnswer(invocation -> {
+            if (RACED_URL.equals(invocation.getArgument(0))) {
+                jdbcTemplate.update("INSERT INTO SAVED_LINKS (LINK_ID, USER_ID, ORIGIN_URL, URL_HASH, TITLE)"
+                                + " VALUES (:linkId, :userId, :url, :urlHash, 'saved')",
+                        new MapSqlParameterSource()
+                                .addValue("linkId", UuidV7.generate())
+                                .addValue("userId", user.getUserId())
+                                .addValue("url", RACED_URL)
+                                .addValue("urlHash", UrlCanonicalizer.hash(urlCanonicalizer.canonicalize(RACED_URL))));
+            }
+            throw new ServiceException("Страница недоступна");
+        });
+
+        BookmarkImportService importService = new BookmarkImportService(importJobRepository, pageMetadataCache,
+                urlCanonicalizer, mock(LinkSearchBackend.class), jdbcTemplate, tagDictionary, transactionTemplate,
+                4, 2);
+        BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+        String file = """
+                {"url": "https://example.com/raced", "title": "Raced", "tags": ["java"]}
+                {"url": "https://example.com/other", "title": "Other", "tags": ["java"]}
+                """;
+        try {
+            importService.start(user, 1L, "file", "links.jsonl", null, new ImportFeedback() {
+                @Override
+                public InputStream openFile(String fileId) {
+                    return new ByteArrayInputStream(file.getBytes(StandardCharsets.UTF_8));
+                }
+
+                @Override
+                public void progress(Long chatId, Integer messageId, String text) {
+                    messages.add(text);
+                }
+            });
+            assertEquals(String.format(MessageConstants.MESSAGE_IMPORT_DONE, 2, 1), messages.poll(10, TimeUnit.SECONDS));
+        } finally {
+            importService.shutdown();
+        }
+
+        ImportJob job = importJobRepository.findAllByStatus(ImportJob.Status.DONE).getFirst();
+        assertEquals(2, job.getProcessed());
+        assertEquals(1, job.getImported());
+        assertEquals(2, jdbcTemplate.getJdbcTemplate().queryForObject("SELECT COUNT(*) FROM SAVED_LINKS", Integer.class));
+        assertEquals("saved", jdbcTemplate.queryForObject("SELECT TITLE FROM SAVED_LINKS WHERE ORIGIN_URL = :url",
+                new MapSqlParameterSource("url", RACED_URL), String.class));
+    }
+}
@@ -0,0 +1,68 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HostHealthRegistryTests {
+
+    private static final String HOST = "example.com";
+
+    private HostHealthRegistry registry(Duration openDuration) {
+        return new HostHealthRegistry(new SimpleMeterRegistry(), Duration.ofSeconds(60), Duration.ofSeconds(1),
+                3, 3, openDuration, 100);
+    }
+
+    @Test
+    void timeoutFollowsObservedLatency() {
+        HostHealthRegistry registry = registry(Duration.ofMinutes(5));
+        assertEquals(Duration.ofSeconds(60), registry.timeout(HOST));
+
+        for (int i = 0; i < 10; i++) {
+            registry.success(HOST, Duration.ofMillis(400 + i * 10));
+        }
+        // p99 = 490 мс, с запасом x3
+        assertEquals(Duration.ofMillis(1470), registry.timeout(HOST));
+
+        // Быстрый хост: не меньше min-timeout
+        for (int i = 0; i < 10; i++) {
+            registry.success("fast.example.com", Duration.ofMillis(20));
+        }
+        assertEquals(Duration.ofSeconds(1), registry.timeout("fast.example.com"));
+    }
+
+    @Test
+    void circuitOpensAfterConsecutiveFailures() {
+        HostHealthRegistry registry = registry(Duration.ofMinutes(5));
+        registry.failure(HOST, "SocketTimeoutException");
+        registry.failure(HOST, "SocketTimeoutException");
+        assertTrue(registry.allow(HOST));
+        registry.failure(HOST, "SocketTimeoutException");
+
+        assertFalse(registry.allow(HOST));
+        assertEquals(HostHealthRegistry.State.OPEN, registry.status(true).get(HOST).state());
+
+        assertTrue(registry.reset(HOST));
+        assertTrue(registry.allow(HOST));
+    }
+
+    @Test
+    void halfOpenLetsSingleProbeThrough() {
+        HostHealthRegistry registry = registry(Duration.ZERO);
+        for (int i = 0; i < 3; i++) {
+            registry.failure(HOST, "ConnectException");
+        }
+        // Время отключения прошло: одна пробная загрузка
+        assertTrue(registry.allow(HOST));
+        assertFalse(registry.allow(HOST));
+
+        registry.success(HOST, Duration.ofMillis(100));
+        assertTrue(registry.allow(HOST));
+        assertTrue(registry.status(true).isEmpty());
+    }
+}
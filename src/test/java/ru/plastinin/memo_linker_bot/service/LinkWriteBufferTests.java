@@ -0,0 +1,142 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.plastinin.memo_linker_bot.module.SavedLink;
+import ru.plastinin.memo_linker_bot.module.User;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Буфер пишет своим потоком в своих транзакциях: тесты работают без общей транзакции и чистят таблицы сами
+@DataJpaTest
+@Import(TagDictionary.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LinkWriteBufferTests {
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private TagDictionary tagDictionary;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private User user;
+
+    @BeforeEach
+    void createUser() {
+        user = User.builder().userId(UUID.randomUUID()).chatId(1L).username("user").build();
+        jdbcTemplate.update("INSERT INTO USERS (USER_ID, CHAT_ID, USERNAME) VALUES (:userId, 1, 'user')",
+                new MapSqlParameterSource("userId", user.getUserId()));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.getJdbcTemplate().update("DELETE FROM LINK_TAGS");
+        jdbcTemplate.getJdbcTemplate().update("DELETE FROM SAVED_LINKS");
+        jdbcTemplate.getJdbcTemplate().update("DELETE FROM USERS");
+    }
+
+    private LinkWriteBuffer buffer(Duration maxDelay) {
+        return new LinkWriteBuffer(jdbcTemplate, transactionTemplate, tagDictionary, meterRegistry,
+                true, 100, maxDelay);
+    }
+
+    private SavedLink link(String url, String hash) {
+        return SavedLink.builder()
+                .user(user)
+                .originUrl(url)
+                .urlHash(hash)
+                .title("Title " + hash)
+                .createdAt(LocalDateTime.now())
+                .tags(Set.of("java", "spring"))
+                .build();
+    }
+
+    private static boolean result(CompletableFuture<Boolean> future) throws Exception {
+        return future.get(10, TimeUnit.SECONDS);
+    }
+
+    private int countLinks() {
+        return jdbcTemplate.getJdbcTemplate().queryForObject("SELECT COUNT(*) FROM SAVED_LINKS", Integer.class);
+    }
+
+    @Test
+    void batchSkipsSavedAndRepeatedLinks() throws Exception {
+        LinkWriteBuffer buffer = buffer(Duration.ofMillis(500));
+        assertTrue(result(buffer.write(link("https://example.com/1", "h1"))));
+
+        List<CompletableFuture<Boolean>> results = List.of(
+                buffer.write(link("https://example.com/1", "h1")),
+                buffer.write(link("https://example.com/2", "h2")),
+                buffer.write(link("https://example.com/2#again", "h2")),
+                buffer.write(link("https://example.com/3", "h3")));
+        assertEquals(List.of(false, true, false, true), List.of(result(results.get(0)), result(results.get(1)),
+                result(results.get(2)), result(results.get(3))));
+        buffer.shutdown();
+
+        assertEquals(3, countLinks());
+        assertEquals(6, jdbcTemplate.getJdbcTemplate().queryForObject("SELECT COUNT(*) FROM LINK_TAGS", Integer.class));
+        // Первая ссылка и одна пачка из четырех
+        DistributionSummary batches = meterRegistry.get("memo.save.write-behind.batch").summary();
+        assertEquals(2, batches.count());
+        assertEquals(5, batches.totalAmount());
+    }
+
+    @Test
+    void failedBatchIsWrittenOneByOne() throws Exception {
+        LinkWriteBuffer buffer = buffer(Duration.ofMillis(500));
+        // Ссылка длиннее ORIGIN_URL ломает пачку, но не соседнюю ссылку и не считается дубликатом
+        CompletableFuture<Boolean> tooLong = buffer.write(link("https://example.com/" + "a".repeat(3000), "long"));
+        CompletableFuture<Boolean> valid = buffer.write(link("https://example.com/valid", "valid"));
+
+        assertTrue(result(valid));
+        ExecutionException error = assertThrows(ExecutionException.class, () -> result(tooLong));
+        assertFalse(SavedLinkConstraints.isDuplicateLink(error.getCause()));
+        buffer.shutdown();
+        assertEquals(1, countLinks());
+    }
+
+    @Test
+    void shutdownWritesAcceptedLinks() throws Exception {
+        // Пачка ждала бы минуту: остановка записывает ее сразу
+        LinkWriteBuffer buffer = buffer(Duration.ofMinutes(1));
+        List<CompletableFuture<Boolean>> results = List.of(
+                buffer.write(link("https://example.com/1", "h1")),
+                buffer.write(link("https://example.com/2", "h2")));
+        buffer.shutdown();
+
+        for (CompletableFuture<Boolean> future : results) {
+            assertTrue(future.isDone());
+            assertTrue(result(future));
+        }
+        assertEquals(2, countLinks());
+        assertThrows(ExecutionException.class, () -> result(buffer.write(link("https://example.com/3", "h3"))));
+    }
+}
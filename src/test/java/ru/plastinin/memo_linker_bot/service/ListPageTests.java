@@ -0,0 +1,86 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.plastinin.memo_linker_bot.dto.LinkListItem;
+import ru.plastinin.memo_linker_bot.dto.ListPage;
+import ru.plastinin.memo_linker_bot.module.User;
+import ru.plastinin.memo_linker_bot.repository.SavedLinkRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ListPageTests {
+
+    private static final Long CHAT_ID = 1L;
+
+    @Mock
+    private UserCache userCache;
+
+    @Mock
+    private SavedLinkRepository savedLinkRepository;
+
+    @InjectMocks
+    private MemoLinkerBotService botService;
+
+    private final User user = User.builder().userId(UUID.randomUUID()).chatId(CHAT_ID).username("user").build();
+
+    private static List<LinkListItem> items(int count, int titleLength) {
+        List<LinkListItem> items = new ArrayList<>();
+        LocalDateTime createdAt = LocalDateTime.of(2026, 1, 1, 12, 0);
+        for (int i = 0; i < count; i++) {
+            items.add(new LinkListItem(UUID.randomUUID(), "https://example.com/" + i,
+                    String.valueOf((char) ('a' + i)).repeat(titleLength), createdAt.minusMinutes(i), false));
+        }
+        return items;
+    }
+
+    @Test
+    void shortPageEndsWithoutCursor() {
+        when(userCache.findByChatId(CHAT_ID)).thenReturn(Optional.of(user));
+        when(savedLinkRepository.findListPage(eq(user), anyInt())).thenReturn(items(3, 10));
+
+        ListPage page = botService.listCommandHandler(CHAT_ID);
+        assertTrue(page.getText().contains("https://example.com/2"));
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void truncatedPageContinuesAfterLastRenderedLink() {
+        // Пять длинных заголовков не помещаются в одно сообщение
+        List<LinkListItem> items = items(5, 1000);
+        when(userCache.findByChatId(CHAT_ID)).thenReturn(Optional.of(user));
+        when(savedLinkRepository.findListPage(eq(user), anyInt())).thenReturn(items);
+
+        ListPage page = botService.listCommandHandler(CHAT_ID);
+        int rendered = 0;
+        while (rendered < items.size() && page.getText().contains(items.get(rendered).getOriginUrl() + "\"")) {
+            rendered++;
+        }
+        assertTrue(rendered > 0 && rendered < items.size());
+        assertFalse(page.getText().contains(items.get(rendered).getOriginUrl() + "\""));
+        assertTrue(page.getNextCursor().endsWith("_" + items.get(rendered - 1).getLinkId()));
+
+        // Следующая страница начинается с первой не выведенной ссылки
+        List<LinkListItem> rest = items.subList(rendered, items.size());
+        when(savedLinkRepository.findListPageOlderThan(eq(user), any(), eq(items.get(rendered - 1).getLinkId()),
+                anyInt())).thenReturn(rest);
+        ListPage next = botService.listPageHandler(CHAT_ID, true, page.getNextCursor());
+        assertTrue(next.getText().contains(rest.getFirst().getOriginUrl() + "\""));
+    }
+}
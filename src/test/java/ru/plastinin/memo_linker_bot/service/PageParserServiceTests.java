@@ -0,0 +1,100 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.core.io.ClassPathResource;
+import ru.plastinin.memo_linker_bot.configuration.StopWordsConfig;
+import ru.plastinin.memo_linker_bot.dto.PageMetadata;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PageParserServiceTests {
+
+    // Страницы-образцы бенчмарков
+    private static final Path CORPUS = Path.of("src/jmh/resources/corpus");
+
+    private final StopWordsConfig stopWordsConfig = stopWords();
+
+    // Страница уже загружена: PageFetcher не нужен
+    private final PageParserService pageParserService =
+            new PageParserService(stopWordsConfig, new SimpleMeterRegistry(), null);
+
+    @ParameterizedTest
+    @ValueSource(strings = {"ru", "en"})
+    void streamingTagsMatchDocumentText(String corpus) throws IOException {
+        String html = Files.readString(CORPUS.resolve(corpus + ".html"));
+        PageMetadata metadata = extract(html);
+
+        Document doc = Jsoup.parse(html);
+        assertEquals(doc.title(), metadata.getTitle());
+        // Тот же счетчик по тексту целого документа
+        WordFrequencyCounter counter = new WordFrequencyCounter(stopWordsConfig.getStopWords());
+        counter.append(doc.text());
+        assertEquals(counter.topTags(10), metadata.getTags());
+
+        // Прежний подсчет collectTags(doc.text()): теги не реже десятого по частоте слова
+        Map<String, Integer> reference = collectFrequencies(doc.text());
+        List<Integer> sorted = reference.values().stream().sorted(Comparator.reverseOrder()).toList();
+        int threshold = sorted.get(Math.min(10, sorted.size()) - 1);
+        for (String tag : metadata.getTags()) {
+            assertTrue(reference.getOrDefault(tag, 0) >= threshold, tag);
+        }
+    }
+
+    @Test
+    void inlineMarkupDoesNotSplitWords() {
+        PageMetadata metadata = extract("""
+                <html><head><title>Title</title></head><body>
+                  <p>Hel<b>lo</b> Lang<wbr>uage <a href="/">Spring</a>'s</p><div>block</div>next<br>line
+                </body></html>
+                """);
+        assertEquals(Set.of("title", "hello", "language", "spring's", "block", "next", "line"), metadata.getTags());
+    }
+
+    private PageMetadata extract(String html) {
+        return pageParserService.extract(new StreamParser(Parser.htmlParser()).parse(html, "https://example.com/"));
+    }
+
+    /**
+     * Прежний подсчет частот по тексту документа: первые 100K символов, слова через Scanner
+     */
+    private Map<String, Integer> collectFrequencies(String text) {
+        text = text.toLowerCase();
+        if (text.length() > WordFrequencyCounter.MAX_TEXT_LENGTH) {
+            text = text.substring(0, WordFrequencyCounter.MAX_TEXT_LENGTH);
+        }
+        Map<String, Integer> wordFrequency = new HashMap<>();
+        try (Scanner scanner = new Scanner(text)) {
+            scanner.useDelimiter("[^\\p{L}\\p{M}'-]+");
+            while (scanner.hasNext() && wordFrequency.size() < WordFrequencyCounter.MAX_UNIQUE_WORDS) {
+                String word = scanner.next();
+                if (word.length() >= 3 && !stopWordsConfig.getStopWords().contains(word)) {
+                    wordFrequency.put(word, wordFrequency.getOrDefault(word, 0) + 1);
+                }
+            }
+        }
+        return wordFrequency;
+    }
+
+    private static StopWordsConfig stopWords() {
+        StopWordsConfig config = new StopWordsConfig(new HashSet<>(), new ClassPathResource("static/StopWords.txt"));
+        try {
+            config.init();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return config;
+    }
+}
@@ -0,0 +1,95 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import ru.plastinin.memo_linker_bot.dto.LinkView;
+import ru.plastinin.memo_linker_bot.dto.SearchQuery;
+import ru.plastinin.memo_linker_bot.dto.SearchResult;
+import ru.plastinin.memo_linker_bot.module.SavedLink;
+import ru.plastinin.memo_linker_bot.module.User;
+import ru.plastinin.memo_linker_bot.repository.SavedLinkRepository;
+import ru.plastinin.memo_linker_bot.repository.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({RepositorySearchBackend.class, TagDictionary.class})
+class RepositorySearchBackendTests {
+
+    @Autowired
+    private RepositorySearchBackend searchBackend;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SavedLinkRepository savedLinkRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void findRunsConstantNumberOfStatements() {
+        User user = createUserWithLinks(30);
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        SearchQuery query = SearchQuery.builder()
+                .words(List.of("spring"))
+                .tags(List.of("java"))
+                .build();
+        SearchResult result = searchBackend.search(user, query, 10);
+
+        assertEquals(30, result.getTotal());
+        assertEquals(10, result.getLinks().size());
+        for (LinkView link : result.getLinks()) {
+            assertEquals(2, link.getTags().size());
+        }
+        // Ссылки, количество и теги выводимых ссылок
+        assertEquals(3, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void findWithoutCountWhenAllLinksFit() {
+        User user = createUserWithLinks(5);
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        SearchResult result = searchBackend.search(user, SearchQuery.builder().tags(List.of("tag3")).build(), 10);
+
+        assertEquals(1, result.getTotal());
+        assertEquals("Spring article 3", result.getLinks().getFirst().getTitle());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    private User createUserWithLinks(int count) {
+        User user = userRepository.save(User.builder()
+                .chatId(1L)
+                .username("user")
+                .createdAd(LocalDateTime.now())
+                .build());
+        for (int i = 0; i < count; i++) {
+            savedLinkRepository.save(SavedLink.builder()
+                    .user(user)
+                    .originUrl("https://example.com/" + i)
+                    .title("Spring article " + i)
+                    .description("About Spring Boot")
+                    .createdAt(LocalDateTime.now().plusSeconds(i))
+                    .tags(new HashSet<>(Set.of("java", "tag" + i)))
+                    .build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return user;
+    }
+}
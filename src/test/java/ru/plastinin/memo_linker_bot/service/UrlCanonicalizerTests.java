@@ -0,0 +1,34 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class UrlCanonicalizerTests {
+
+    @Test
+    void trivialVariantsHaveSameCanonicalForm() {
+        String canonical = "https://example.com/articles/spring?id=42";
+        assertEquals(canonical, UrlCanonicalizer.normalize("https://example.com/articles/spring?id=42"));
+        assertEquals(canonical, UrlCanonicalizer.normalize("  HTTPS://Example.COM:443/articles/spring/?id=42  "));
+        assertEquals(canonical, UrlCanonicalizer.normalize(
+                "https://example.com/articles/spring?utm_source=tg&id=42&utm_medium=social&fbclid=abc#comments"));
+        assertEquals("https://example.com/", UrlCanonicalizer.normalize("https://example.com"));
+        assertEquals("https://example.com/", UrlCanonicalizer.normalize("https://example.com/?gclid=1"));
+    }
+
+    @Test
+    void meaningfulPartsAreKept() {
+        assertEquals("http://example.com:8080/a?b=1&c=2", UrlCanonicalizer.normalize("http://example.com:8080/a?b=1&c=2"));
+        assertEquals("https://example.com/app#/settings", UrlCanonicalizer.normalize("https://example.com/app#/settings"));
+        assertNotEquals(UrlCanonicalizer.normalize("https://example.com/A"), UrlCanonicalizer.normalize("https://example.com/a"));
+    }
+
+    @Test
+    void hashIsFixedWidth() {
+        String hash = UrlCanonicalizer.hash("https://example.com/");
+        assertEquals(64, hash.length());
+        assertEquals(hash, UrlCanonicalizer.hash(UrlCanonicalizer.normalize("https://EXAMPLE.com")));
+    }
+}
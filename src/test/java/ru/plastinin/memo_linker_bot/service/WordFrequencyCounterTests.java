@@ -0,0 +1,101 @@
+package ru.plastinin.memo_linker_bot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WordFrequencyCounterTests {
+
+    private static final Set<String> STOP_WORDS = Set.of("the", "and", "for", "что", "как", "это");
+
+    private static final String TEXT = """
+            Spring Boot makes it easy to create stand-alone, production-grade Spring based Applications.
+            Spring Boot applications need very little Spring configuration; the boot starter does the rest.
+            Это статья о том, как Spring Boot помогает писать приложения. Приложения на Spring Boot
+            запускаются быстро, а конфигурация Spring Boot минимальна. Что ещё? Java, Java, Java!
+            Don't repeat yourself — it's the rule of thumb for well-known Spring code-base.
+            Ёлка, ёлка, ЁЛКА и Café, CAFÉ, café — слова с диакритикой тоже считаются.
+            """;
+
+    @Test
+    void topTagsMatchScannerImplementation() {
+        WordFrequencyCounter counter = new WordFrequencyCounter(STOP_WORDS);
+        for (String line : TEXT.split("\n")) {
+            counter.append(line);
+            counter.endWord();
+        }
+        Set<String> tags = counter.topTags(10);
+
+        Map<String, Integer> reference = scannerFrequencies(TEXT);
+        List<Integer> sorted = reference.values().stream().sorted(Comparator.reverseOrder()).toList();
+        int threshold = sorted.get(Math.min(10, sorted.size()) - 1);
+
+        assertEquals(Math.min(10, reference.size()), tags.size());
+        // Все теги - из эталонного подсчета и не реже десятого по частоте слова
+        for (String tag : tags) {
+            assertTrue(reference.containsKey(tag), tag);
+            assertTrue(reference.get(tag) >= threshold, tag);
+        }
+        // Все слова, которые чаще порогового, попали в теги
+        reference.forEach((word, count) -> {
+            if (count > threshold) {
+                assertTrue(tags.contains(word), word);
+            }
+        });
+        assertTrue(tags.containsAll(Set.of("spring", "boot", "java", "ёлка", "café")));
+    }
+
+    @Test
+    void stopsAfterMaxUniqueWords() {
+        WordFrequencyCounter counter = new WordFrequencyCounter(STOP_WORDS);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < WordFrequencyCounter.MAX_UNIQUE_WORDS; i++) {
+            text.append("word").append((char) ('a' + i % 26)).append((char) ('a' + i / 26)).append(' ');
+        }
+        counter.append(text);
+        assertTrue(counter.isFull());
+    }
+
+    @Test
+    void whitespaceRunsCountAsOneCharacter() {
+        WordFrequencyCounter counter = new WordFrequencyCounter(STOP_WORDS);
+        // Отступы разметки не съедают ограничение длины текста
+        for (int i = 0; i < WordFrequencyCounter.MAX_TEXT_LENGTH; i++) {
+            counter.append("\n        ");
+            counter.endWord();
+        }
+        assertFalse(counter.isFull());
+        counter.append("Hel");
+        counter.append("lo");
+        assertEquals(Set.of("hello"), counter.topTags(10));
+    }
+
+    @Test
+    void emptyTextHasNoTags() {
+        WordFrequencyCounter counter = new WordFrequencyCounter(STOP_WORDS);
+        counter.append("");
+        counter.append("a an to");
+        assertTrue(counter.topTags(10).isEmpty());
+    }
+
+    /**
+     * Прежний подсчет частот через Scanner
+     */
+    private static Map<String, Integer> scannerFrequencies(String text) {
+        Map<String, Integer> wordFrequency = new HashMap<>();
+        try (Scanner scanner = new Scanner(text.toLowerCase())) {
+            scanner.useDelimiter("[^\\p{L}\\p{M}'-]+");
+            while (scanner.hasNext() && wordFrequency.size() < WordFrequencyCounter.MAX_UNIQUE_WORDS) {
+                String word = scanner.next().toLowerCase();
+                if (word.length() >= 3 && !STOP_WORDS.contains(word)) {
+                    wordFrequency.put(word, wordFrequency.getOrDefault(word, 0) + 1);
+                }
+            }
+        }
+        return wordFrequency;
+    }
+}